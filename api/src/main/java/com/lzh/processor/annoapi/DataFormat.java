@@ -0,0 +1,23 @@
+package com.lzh.processor.annoapi;
+
+/**
+ * the way to pass RequestData by Intent or Bundle
+ */
+public enum DataFormat {
+    /**
+     * use the processor option processortools.format,serializable if not set
+     */
+    auto,
+    /**
+     * RequestData implements java.io.Serializable
+     */
+    serializable,
+    /**
+     * RequestData implements android.os.Parcelable,fields are written one by one
+     */
+    parcelable,
+    /**
+     * every field is put as a typed extra with its own key,only the other types are serialized
+     */
+    flat
+}
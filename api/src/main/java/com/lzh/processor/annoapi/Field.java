@@ -32,4 +32,9 @@ public @interface Field {
 
     FieldType fieldType() default FieldType.Serializable;
 
+    /**
+     * pass the value by copy or by reference in process
+     */
+    Transport transport() default Transport.value;
+
 }
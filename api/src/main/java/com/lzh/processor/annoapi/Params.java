@@ -12,4 +12,22 @@ import java.lang.annotation.Target;
 @Retention(RetentionPolicy.CLASS)
 public @interface Params {
     Field[] fields() default {};
+
+    /**
+     * the way to pass RequestData,see {@link DataFormat}
+     */
+    DataFormat format() default DataFormat.auto;
+
+    /**
+     * the route key to find the generated class in DispatcherRegistry,empty if it is only found by class
+     */
+    String route() default "";
+
+    /**
+     * generate the static reuse() method,it returns a builder confined to current thread
+     * that is reset and recycled after createIntent/createBundle.
+     * only {@link DataFormat#flat} is supported,the RequestData of other formats is still held by Intent or Bundle
+     * after it is used,so it is never reset in place,it is an error to make such class reusable
+     */
+    boolean reusable() default false;
 }
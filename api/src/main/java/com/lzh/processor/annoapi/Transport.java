@@ -0,0 +1,21 @@
+package com.lzh.processor.annoapi;
+
+/**
+ * the way to pass the value of a field
+ */
+public enum Transport {
+    /**
+     * the value is copied into Intent or Bundle
+     */
+    value,
+    /**
+     * the value is kept in com.lzh.processor.runtime.HandoffStore of this process,
+     * only a token is put into Intent or Bundle and getData returns the same instance without copy.
+     * <p>
+     * The value is read without being removed,so the receiver recreated in this process with the same extras
+     * gets it again,it is removed when it is not read in the timeout or evicted by the memory budget.
+     * If the process was recreated or the value was removed,the token could not be resolved
+     * and the field keeps its default value,so use it only for the value that could be reloaded.
+     */
+    reference
+}
@@ -0,0 +1,312 @@
+package com.lzh.processor.runtime;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+
+/**
+ * Reader of the format written by {@link BinaryWriter},used by generated RequestData.fromBytes(byte[]).
+ * <p>
+ * Call {@link #next()} to move to the next field,then read its value by the method matching
+ * {@link #tag()},or {@link #skip()} it if the field is unknown or its type has been changed.
+ */
+public final class BinaryReader {
+
+    private final byte[] buffer;
+    private int position;
+    private int limit;
+    private int tag = -1;
+
+    public BinaryReader(byte[] buffer) {
+        this.buffer = buffer;
+        this.limit = buffer.length;
+    }
+
+    /**
+     * read the header
+     * @return the schema hash of writer
+     * @throws IllegalArgumentException if the data is not written by a compatible writer
+     */
+    public int readHeader() {
+        if (limit == 0 || buffer[position++] != BinaryWriter.VERSION) {
+            throw new IllegalArgumentException("unsupported binary data");
+        }
+        return (int) readRawVarint();
+    }
+
+    /**
+     * move to next field
+     * @return false if there is no more field
+     */
+    public boolean next() {
+        if (position >= limit) {
+            tag = -1;
+            return false;
+        }
+        tag = (int) readRawVarint();
+        return true;
+    }
+
+    /**
+     * the tag of current field,(id &lt;&lt; 3 | wire type)
+     */
+    public int tag() {
+        return tag;
+    }
+
+    public void skip() {
+        switch (tag & 7) {
+            case BinaryWriter.VARINT:
+                readRawVarint();
+                break;
+            case BinaryWriter.FIXED64:
+                position += 8;
+                break;
+            case BinaryWriter.LEN:
+                int length = (int) readRawVarint();
+                position += length;
+                break;
+            case BinaryWriter.FIXED32:
+                position += 4;
+                break;
+            case BinaryWriter.NULL:
+                break;
+            default:
+                throw new IllegalArgumentException("unknown wire type of tag " + tag);
+        }
+        if (position > limit) {
+            throw new IllegalArgumentException("truncated binary data");
+        }
+    }
+
+    public int readInt() {
+        return unzigzag((int) readRawVarint());
+    }
+
+    public long readLong() {
+        return unzigzag(readRawVarint());
+    }
+
+    public boolean readBoolean() {
+        return readRawVarint() != 0;
+    }
+
+    public byte readByte() {
+        return (byte) readInt();
+    }
+
+    public short readShort() {
+        return (short) readInt();
+    }
+
+    public char readChar() {
+        return (char) readRawVarint();
+    }
+
+    public float readFloat() {
+        return Float.intBitsToFloat(readRawFixed32());
+    }
+
+    public double readDouble() {
+        return Double.longBitsToDouble(readRawFixed64());
+    }
+
+    public String readString() {
+        int length = (int) readRawVarint();
+        return readRawString(length);
+    }
+
+    public byte[] readBytes() {
+        int length = (int) readRawVarint();
+        checkRemaining(length);
+        byte[] bytes = new byte[length];
+        System.arraycopy(buffer, position, bytes, 0, length);
+        position += length;
+        return bytes;
+    }
+
+    public boolean[] readBooleanArray() {
+        int end = beginBlock();
+        boolean[] result = new boolean[end - position];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = buffer[position++] != 0;
+        }
+        return result;
+    }
+
+    public short[] readShortArray() {
+        int end = beginBlock();
+        short[] result = new short[countVarints(end)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (short) unzigzag((int) readRawVarint());
+        }
+        return result;
+    }
+
+    public char[] readCharArray() {
+        int end = beginBlock();
+        char[] result = new char[countVarints(end)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (char) readRawVarint();
+        }
+        return result;
+    }
+
+    public int[] readIntArray() {
+        int end = beginBlock();
+        int[] result = new int[countVarints(end)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = unzigzag((int) readRawVarint());
+        }
+        return result;
+    }
+
+    public long[] readLongArray() {
+        int end = beginBlock();
+        long[] result = new long[countVarints(end)];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = unzigzag(readRawVarint());
+        }
+        return result;
+    }
+
+    public float[] readFloatArray() {
+        int end = beginBlock();
+        float[] result = new float[(end - position) / 4];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Float.intBitsToFloat(readRawFixed32());
+        }
+        return result;
+    }
+
+    public double[] readDoubleArray() {
+        int end = beginBlock();
+        double[] result = new double[(end - position) / 8];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = Double.longBitsToDouble(readRawFixed64());
+        }
+        return result;
+    }
+
+    public String[] readStringArray() {
+        ArrayList<String> list = readStringList();
+        return list.toArray(new String[list.size()]);
+    }
+
+    public ArrayList<String> readStringList() {
+        int end = beginBlock();
+        ArrayList<String> result = new ArrayList<>();
+        while (position < end) {
+            result.add(readRawNullableString());
+        }
+        return result;
+    }
+
+    public LinkedHashSet<String> readStringSet() {
+        int end = beginBlock();
+        LinkedHashSet<String> result = new LinkedHashSet<>();
+        while (position < end) {
+            result.add(readRawNullableString());
+        }
+        return result;
+    }
+
+    public Object readSerializable() {
+        byte[] bytes = readBytes();
+        try {
+            ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes));
+            try {
+                return in.readObject();
+            } finally {
+                in.close();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalArgumentException("can not deserialize tag " + tag, e);
+        }
+    }
+
+    /**
+     * read length of block
+     * @return the end position of block
+     */
+    private int beginBlock() {
+        int length = (int) readRawVarint();
+        checkRemaining(length);
+        return position + length;
+    }
+
+    /**
+     * count the varints from current position to end,so that the array is allocated once
+     */
+    private int countVarints(int end) {
+        int count = 0;
+        for (int i = position; i < end; i++) {
+            if ((buffer[i] & 0x80) == 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private String readRawNullableString() {
+        int length = (int) readRawVarint();
+        return length == 0 ? null : readRawString(length - 1);
+    }
+
+    private String readRawString(int length) {
+        checkRemaining(length);
+        try {
+            String value = new String(buffer, position, length, "UTF-8");
+            position += length;
+            return value;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private long readRawVarint() {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            checkRemaining(1);
+            byte b = buffer[position++];
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new IllegalArgumentException("malformed varint");
+    }
+
+    private int readRawFixed32() {
+        checkRemaining(4);
+        int value = (buffer[position] & 0xFF)
+                | (buffer[position + 1] & 0xFF) << 8
+                | (buffer[position + 2] & 0xFF) << 16
+                | (buffer[position + 3] & 0xFF) << 24;
+        position += 4;
+        return value;
+    }
+
+    private long readRawFixed64() {
+        long low = readRawFixed32() & 0xFFFFFFFFL;
+        long high = readRawFixed32() & 0xFFFFFFFFL;
+        return low | high << 32;
+    }
+
+    private void checkRemaining(int length) {
+        if (length < 0 || position + length > limit) {
+            throw new IllegalArgumentException("truncated binary data");
+        }
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,352 @@
+package com.lzh.processor.runtime;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Writer of the compact binary format used by generated RequestData.toBytes().
+ * <p>
+ * The data starts with a header of {@link #VERSION} and the schema hash of RequestData,
+ * followed by tagged fields. The tag of a field is a varint of (id &lt;&lt; 3 | wire type),
+ * so that a reader could skip the fields it does not know:
+ * <ul>
+ * <li>{@link #VARINT}: zigzag encoded integers,boolean and char</li>
+ * <li>{@link #FIXED32},{@link #FIXED64}: float and double</li>
+ * <li>{@link #LEN}: a varint length followed by the bytes of String,arrays,collections
+ * and serialized objects</li>
+ * <li>{@link #NULL}: a null reference,no payload</li>
+ * </ul>
+ * Lengths of arrays and collections are written in place and backpatched after the block
+ * is written,the block is moved only if its length does not fit in one byte.
+ */
+public final class BinaryWriter {
+
+    public static final int VARINT = 0;
+    public static final int FIXED64 = 1;
+    public static final int LEN = 2;
+    public static final int NULL = 3;
+    public static final int FIXED32 = 5;
+
+    /**
+     * version of the format,written as the first byte
+     */
+    public static final int VERSION = 1;
+
+    private byte[] buffer;
+    private int position;
+
+    public BinaryWriter() {
+        this(64);
+    }
+
+    public BinaryWriter(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    public BinaryWriter writeHeader(int schemaHash) {
+        writeRawByte(VERSION);
+        writeRawVarint(schemaHash & 0xFFFFFFFFL);
+        return this;
+    }
+
+    public BinaryWriter writeInt(int id, int value) {
+        writeTag(id, VARINT);
+        writeRawVarint(zigzag(value));
+        return this;
+    }
+
+    public BinaryWriter writeLong(int id, long value) {
+        writeTag(id, VARINT);
+        writeRawVarint(zigzag(value));
+        return this;
+    }
+
+    public BinaryWriter writeBoolean(int id, boolean value) {
+        writeTag(id, VARINT);
+        writeRawByte(value ? 1 : 0);
+        return this;
+    }
+
+    public BinaryWriter writeChar(int id, char value) {
+        writeTag(id, VARINT);
+        writeRawVarint(value);
+        return this;
+    }
+
+    public BinaryWriter writeFloat(int id, float value) {
+        writeTag(id, FIXED32);
+        writeRawFixed32(Float.floatToIntBits(value));
+        return this;
+    }
+
+    public BinaryWriter writeDouble(int id, double value) {
+        writeTag(id, FIXED64);
+        writeRawFixed64(Double.doubleToLongBits(value));
+        return this;
+    }
+
+    public BinaryWriter writeNull(int id) {
+        writeTag(id, NULL);
+        return this;
+    }
+
+    public BinaryWriter writeString(int id, String value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        writeTag(id, LEN);
+        writeRawString(value);
+        return this;
+    }
+
+    public BinaryWriter writeBytes(int id, byte[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        writeTag(id, LEN);
+        writeRawVarint(value.length);
+        writeRawBytes(value, 0, value.length);
+        return this;
+    }
+
+    public BinaryWriter writeBooleanArray(int id, boolean[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        int mark = beginBlock(id);
+        for (boolean element : value) {
+            writeRawByte(element ? 1 : 0);
+        }
+        return endBlock(mark);
+    }
+
+    public BinaryWriter writeShortArray(int id, short[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        int mark = beginBlock(id);
+        for (short element : value) {
+            writeRawVarint(zigzag(element));
+        }
+        return endBlock(mark);
+    }
+
+    public BinaryWriter writeCharArray(int id, char[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        int mark = beginBlock(id);
+        for (char element : value) {
+            writeRawVarint(element);
+        }
+        return endBlock(mark);
+    }
+
+    public BinaryWriter writeIntArray(int id, int[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        int mark = beginBlock(id);
+        for (int element : value) {
+            writeRawVarint(zigzag(element));
+        }
+        return endBlock(mark);
+    }
+
+    public BinaryWriter writeLongArray(int id, long[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        int mark = beginBlock(id);
+        for (long element : value) {
+            writeRawVarint(zigzag(element));
+        }
+        return endBlock(mark);
+    }
+
+    public BinaryWriter writeFloatArray(int id, float[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        int mark = beginBlock(id);
+        for (float element : value) {
+            writeRawFixed32(Float.floatToIntBits(element));
+        }
+        return endBlock(mark);
+    }
+
+    public BinaryWriter writeDoubleArray(int id, double[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        int mark = beginBlock(id);
+        for (double element : value) {
+            writeRawFixed64(Double.doubleToLongBits(element));
+        }
+        return endBlock(mark);
+    }
+
+    /**
+     * the elements are written as varint of (length + 1),0 for null element
+     */
+    public BinaryWriter writeStringArray(int id, String[] value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        return writeStrings(id, Arrays.asList(value));
+    }
+
+    public BinaryWriter writeStrings(int id, Collection<String> value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        int mark = beginBlock(id);
+        for (String element : value) {
+            if (element == null) {
+                writeRawByte(0);
+            } else {
+                writeRawNullableString(element);
+            }
+        }
+        return endBlock(mark);
+    }
+
+    /**
+     * write the value by java serialization,for the types that have no compact encoding
+     */
+    public BinaryWriter writeSerializable(int id, Object value) {
+        if (value == null) {
+            return writeNull(id);
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(value);
+            out.close();
+            return writeBytes(id, bytes.toByteArray());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("can not serialize field " + id, e);
+        }
+    }
+
+    public int size() {
+        return position;
+    }
+
+    public byte[] toByteArray() {
+        return Arrays.copyOf(buffer, position);
+    }
+
+    /**
+     * write the tag and reserve one byte for length of block
+     * @return the position of reserved byte
+     */
+    private int beginBlock(int id) {
+        writeTag(id, LEN);
+        int mark = position;
+        writeRawByte(0);
+        return mark;
+    }
+
+    /**
+     * backpatch the length of block,move the block if the length needs more than one byte
+     */
+    private BinaryWriter endBlock(int mark) {
+        int length = position - mark - 1;
+        int size = varintSize(length);
+        if (size > 1) {
+            ensureCapacity(size - 1);
+            System.arraycopy(buffer, mark + 1, buffer, mark + size, length);
+            position += size - 1;
+        }
+        int end = position;
+        position = mark;
+        writeRawVarint(length);
+        position = end;
+        return this;
+    }
+
+    private void writeTag(int id, int wireType) {
+        writeRawVarint(((long) id << 3 | wireType) & 0xFFFFFFFFFL);
+    }
+
+    private void writeRawString(String value) {
+        byte[] bytes = utf8(value);
+        writeRawVarint(bytes.length);
+        writeRawBytes(bytes, 0, bytes.length);
+    }
+
+    private void writeRawNullableString(String value) {
+        byte[] bytes = utf8(value);
+        writeRawVarint(bytes.length + 1L);
+        writeRawBytes(bytes, 0, bytes.length);
+    }
+
+    private void writeRawByte(int value) {
+        ensureCapacity(1);
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeRawBytes(byte[] bytes, int offset, int length) {
+        ensureCapacity(length);
+        System.arraycopy(bytes, offset, buffer, position, length);
+        position += length;
+    }
+
+    private void writeRawVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[position++] = (byte) value;
+    }
+
+    private void writeRawFixed32(int value) {
+        ensureCapacity(4);
+        buffer[position++] = (byte) value;
+        buffer[position++] = (byte) (value >>> 8);
+        buffer[position++] = (byte) (value >>> 16);
+        buffer[position++] = (byte) (value >>> 24);
+    }
+
+    private void writeRawFixed64(long value) {
+        writeRawFixed32((int) value);
+        writeRawFixed32((int) (value >>> 32));
+    }
+
+    private void ensureCapacity(int length) {
+        if (position + length > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+        }
+    }
+
+    private static long zigzag(int value) {
+        return ((value << 1) ^ (value >> 31)) & 0xFFFFFFFFL;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static byte[] utf8(String value) {
+        try {
+            return value.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
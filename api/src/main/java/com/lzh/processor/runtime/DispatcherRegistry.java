@@ -0,0 +1,24 @@
+package com.lzh.processor.runtime;
+
+/**
+ * The registry of generated _Dispatcher and _Builder classes of a module,
+ * generated when the processor option processortools.module is set to its qualified name.
+ * <p>
+ * The lookups are done by switch on class name or route,no reflection is needed.
+ * The registries of library modules listed in the option processortools.dependencies
+ * are merged into the registry of app module,they are looked up in order after its own classes.
+ */
+public interface DispatcherRegistry {
+
+    /**
+     * create the _Dispatcher or _Builder of target class by its create method
+     * @return the new instance,or null if the class is not registered
+     */
+    Object create(Class<?> target);
+
+    /**
+     * create the _Dispatcher or _Builder of the class with route defined by @Params(route)
+     * @return the new instance,or null if the route is not registered
+     */
+    Object create(String route);
+}
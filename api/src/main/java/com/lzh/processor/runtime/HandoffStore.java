@@ -0,0 +1,168 @@
+package com.lzh.processor.runtime;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process store of the values that are passed by reference instead of copied into Intent or Bundle,
+ * used by @Field(transport = reference) and {@link PayloadGuard.Policy#SPILL}.
+ * Only a token is put into extras by the key with {@link #TOKEN_SUFFIX}.
+ * <p>
+ * The receiver reads the value by {@link #get(String)} without removing it,so a receiver recreated in this process
+ * with the same extras,such as a fragment restored from back stack or an activity relaunched with its intent,
+ * reads the same value again. The store is bounded,an entry is removed when:
+ * <ul>
+ * <li>it is not read in the timeout since it is put or read last time</li>
+ * <li>the estimated size of entries exceeds the budget,the least recently read entries are evicted first</li>
+ * <li>it is released by {@link #take(String)}</li>
+ * </ul>
+ * The token contains a nonce of the store,so the token restored after the process was recreated
+ * is never resolved to other value,{@link #get(String)} returns null and the field keeps its default value,
+ * as it does for an entry that has been removed.
+ */
+public final class HandoffStore {
+
+    /**
+     * the suffix of the key whose extra is the token
+     */
+    public static final String TOKEN_SUFFIX = ".handoff";
+
+    /**
+     * the default budget of estimated size of entries,see {@link PayloadSize}
+     */
+    public static final long DEFAULT_BUDGET = 32 * 1024 * 1024;
+
+    public static final long DEFAULT_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private static final HandoffStore DEFAULT = new HandoffStore(DEFAULT_BUDGET, DEFAULT_TIMEOUT);
+
+    private final String nonce = Long.toHexString(new Random().nextLong());
+    /**
+     * in order of put or last read,the least recently read entry is evicted first
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+    private long budget;
+    private long timeoutNanos;
+    private long size;
+    private long sequence;
+
+    public HandoffStore(long budget, long timeoutMillis) {
+        configure(budget, timeoutMillis);
+    }
+
+    public static HandoffStore getDefault() {
+        return DEFAULT;
+    }
+
+    public synchronized void configure(long budget, long timeoutMillis) {
+        this.budget = budget;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        trim(System.nanoTime());
+    }
+
+    /**
+     * keep the value,the entry just put is never evicted by budget in this call
+     * @return the token to take the value
+     */
+    public String put(Object value) {
+        // estimate out of lock,it walks through the collections
+        int valueSize = PayloadSize.of(value);
+        synchronized (this) {
+            String token = nonce + ":" + (++sequence);
+            long now = System.nanoTime();
+            entries.put(token, new Entry(value, valueSize, now + timeoutNanos));
+            size += valueSize;
+            trim(now);
+            return token;
+        }
+    }
+
+    /**
+     * read the value of token and keep it,the timeout of entry restarts and it becomes the newest entry
+     * @return the value,or null if the token is released,evicted,timeout or created by other process
+     */
+    public synchronized Object get(String token) {
+        if (token == null) {
+            return null;
+        }
+        Entry entry = entries.remove(token);
+        if (entry == null) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (entry.expireAt - now < 0) {
+            size -= entry.size;
+            return null;
+        }
+        entry.expireAt = now + timeoutNanos;
+        entries.put(token, entry);
+        return entry.value;
+    }
+
+    /**
+     * remove the value of token,for the receiver that is sure it never reads the value again
+     * @return the value,or null if the token is released,evicted,timeout or created by other process
+     */
+    public synchronized Object take(String token) {
+        if (token == null) {
+            return null;
+        }
+        Entry entry = entries.remove(token);
+        if (entry == null) {
+            return null;
+        }
+        size -= entry.size;
+        return entry.expireAt - System.nanoTime() < 0 ? null : entry.value;
+    }
+
+    /**
+     * the token is created by this store,false if it is restored after the process was recreated
+     */
+    public boolean isOwner(String token) {
+        return token != null && token.startsWith(nonce + ":");
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * the estimated size of entries in bytes
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * remove the timeout entries,then the oldest entries until the size fits the budget
+     */
+    private void trim(long now) {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        // keep the newest entry even if it exceeds the budget alone
+        int removable = entries.size() - 1;
+        while (iterator.hasNext() && removable > 0) {
+            Entry entry = iterator.next().getValue();
+            if (entry.expireAt - now >= 0 && size <= budget) {
+                return;
+            }
+            iterator.remove();
+            size -= entry.size;
+            removable--;
+        }
+    }
+
+    private static class Entry {
+        final Object value;
+        final int size;
+        long expireAt;
+
+        Entry(Object value, int size, long expireAt) {
+            this.value = value;
+            this.size = size;
+            this.expireAt = expireAt;
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.lzh.processor.runtime;
+
+/**
+ * Size guard of the payload put into Intent or Bundle by generated createIntent/createBundle,
+ * generated when the processor option processortools.sizeGuard is true.
+ * <p>
+ * The size of every field is estimated by {@link PayloadSize} into a {@link Meter},
+ * the meter is reported to the {@link Listener} and checked against the limit by {@link Policy}.
+ * The configuration is global,it should be set once at the start of application.
+ */
+public final class PayloadGuard {
+
+    /**
+     * half of the binder transaction buffer,which is shared by the whole process
+     */
+    public static final int DEFAULT_LIMIT = 512 * 1024;
+
+    /**
+     * the field smaller than it is never spilled,the token costs nearly the same
+     */
+    static final int MIN_SPILL_SIZE = 256;
+
+    public enum Policy {
+        /**
+         * only report the size to listener
+         */
+        REPORT,
+        /**
+         * throw IllegalStateException if the payload exceeds the limit
+         */
+        FAIL_FAST,
+        /**
+         * move the largest fields into {@link HandoffStore} until the payload fits the limit,
+         * the token is put by the key with {@link HandoffStore#TOKEN_SUFFIX}
+         */
+        SPILL
+    }
+
+    public interface Listener {
+        /**
+         * called on the thread creating the Intent or Bundle
+         * @param meter the estimated sizes,it should not be kept
+         */
+        void onMeasured(Meter meter);
+    }
+
+    private static volatile int limit = DEFAULT_LIMIT;
+    private static volatile Policy policy = Policy.REPORT;
+    private static volatile Listener listener;
+
+    private PayloadGuard() {
+    }
+
+    public static void setLimit(int limit) {
+        PayloadGuard.limit = limit;
+    }
+
+    public static int getLimit() {
+        return limit;
+    }
+
+    public static void setPolicy(Policy policy) {
+        PayloadGuard.policy = policy == null ? Policy.REPORT : policy;
+    }
+
+    public static Policy getPolicy() {
+        return policy;
+    }
+
+    public static void setListener(Listener listener) {
+        PayloadGuard.listener = listener;
+    }
+
+    /**
+     * @param target the tag of generated class
+     * @param fieldCount the count of fields to be added
+     */
+    public static Meter meter(String target, int fieldCount) {
+        return new Meter(target, fieldCount);
+    }
+
+    /**
+     * the estimated sizes of fields of a RequestData,in the order of fields
+     */
+    public static final class Meter {
+
+        private final String target;
+        private final String[] names;
+        private final int[] sizes;
+        private boolean[] spilled;
+        private int count;
+        private int total;
+
+        Meter(String target, int fieldCount) {
+            this.target = target;
+            this.names = new String[fieldCount];
+            this.sizes = new int[fieldCount];
+        }
+
+        public Meter add(String name, int size) {
+            names[count] = name;
+            sizes[count] = size;
+            count++;
+            total += size;
+            return this;
+        }
+
+        public String getTarget() {
+            return target;
+        }
+
+        public int getFieldCount() {
+            return count;
+        }
+
+        public String getName(int index) {
+            return names[index];
+        }
+
+        public int getSize(int index) {
+            return sizes[index];
+        }
+
+        /**
+         * the estimated size of whole payload
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * the field at index should be passed by {@link HandoffStore},only valid after {@link #check()}
+         */
+        public boolean isSpilled(int index) {
+            return spilled != null && spilled[index];
+        }
+
+        /**
+         * report to the listener and apply the policy
+         * @return true if any field should be spilled
+         * @throws IllegalStateException if the policy is FAIL_FAST and the payload exceeds the limit
+         */
+        public boolean check() {
+            int limit = PayloadGuard.limit;
+            Policy policy = PayloadGuard.policy;
+            if (total > limit && policy == Policy.SPILL) {
+                selectSpilled(limit);
+            }
+            Listener listener = PayloadGuard.listener;
+            if (listener != null) {
+                listener.onMeasured(this);
+            }
+            if (total > limit && policy == Policy.FAIL_FAST) {
+                throw new IllegalStateException(String.format("The payload of %s is about %d bytes,exceeds the limit %d bytes: %s",
+                        target, total, limit, this));
+            }
+            return spilled != null;
+        }
+
+        /**
+         * spill the largest fields until the rest fits the limit
+         */
+        private void selectSpilled(int limit) {
+            int rest = total;
+            while (rest > limit) {
+                int largest = -1;
+                for (int i = 0; i < count; i++) {
+                    if ((spilled == null || !spilled[i]) && sizes[i] >= MIN_SPILL_SIZE
+                            && (largest < 0 || sizes[i] > sizes[largest])) {
+                        largest = i;
+                    }
+                }
+                if (largest < 0) {
+                    return;
+                }
+                if (spilled == null) {
+                    spilled = new boolean[count];
+                }
+                spilled[largest] = true;
+                rest -= sizes[largest];
+            }
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder builder = new StringBuilder("{");
+            for (int i = 0; i < count; i++) {
+                builder.append(i == 0 ? "" : ", ").append(names[i]).append('=').append(sizes[i]);
+            }
+            return builder.append('}').toString();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.lzh.processor.runtime;
+
+import java.lang.reflect.Array;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Cheap estimation of the size of a value written into android.os.Parcel as a Bundle extra,
+ * used by {@link PayloadGuard}. Nothing is serialized,the size is computed from the type and length:
+ * every value has a type header of 4 bytes,Parcel aligns to 4 bytes and writes String as UTF-16.
+ * <p>
+ * The types that Parcel could not describe by length,such as Serializable and Parcelable objects,
+ * are counted as {@link #OBJECT_SIZE}.
+ */
+public final class PayloadSize {
+
+    /**
+     * the estimated size of an object that has no known layout
+     */
+    public static final int OBJECT_SIZE = 128;
+
+    /**
+     * the estimated size of a token of {@link HandoffStore}
+     */
+    public static final int TOKEN_SIZE = 64;
+
+    private static final int HEADER = 4;
+
+    private PayloadSize() {
+    }
+
+    public static int of(boolean value) {
+        return HEADER + 4;
+    }
+
+    public static int of(int value) {
+        return HEADER + 4;
+    }
+
+    public static int of(long value) {
+        return HEADER + 8;
+    }
+
+    public static int of(double value) {
+        return HEADER + 8;
+    }
+
+    public static int of(String value) {
+        return HEADER + string(value);
+    }
+
+    public static int of(byte[] value) {
+        return value == null ? HEADER : HEADER + 4 + align(value.length);
+    }
+
+    public static int of(boolean[] value) {
+        return value == null ? HEADER : HEADER + 4 + value.length * 4;
+    }
+
+    public static int of(char[] value) {
+        return value == null ? HEADER : HEADER + 4 + value.length * 4;
+    }
+
+    public static int of(short[] value) {
+        return value == null ? HEADER : HEADER + 4 + value.length * 4;
+    }
+
+    public static int of(int[] value) {
+        return value == null ? HEADER : HEADER + 4 + value.length * 4;
+    }
+
+    public static int of(float[] value) {
+        return value == null ? HEADER : HEADER + 4 + value.length * 4;
+    }
+
+    public static int of(long[] value) {
+        return value == null ? HEADER : HEADER + 4 + value.length * 8;
+    }
+
+    public static int of(double[] value) {
+        return value == null ? HEADER : HEADER + 4 + value.length * 8;
+    }
+
+    public static int of(String[] value) {
+        if (value == null) {
+            return HEADER;
+        }
+        int size = HEADER + 4;
+        for (String element : value) {
+            size += string(element);
+        }
+        return size;
+    }
+
+    /**
+     * estimate by the runtime type,the elements of collections,maps and object arrays are counted one by one
+     */
+    public static int of(Object value) {
+        if (value == null) {
+            return HEADER;
+        } else if (value instanceof String) {
+            return of((String) value);
+        } else if (value instanceof Long || value instanceof Double) {
+            return HEADER + 8;
+        } else if (value instanceof Number || value instanceof Boolean || value instanceof Character) {
+            return HEADER + 4;
+        } else if (value instanceof Collection) {
+            int size = HEADER + 4;
+            for (Object element : (Collection<?>) value) {
+                size += of(element);
+            }
+            return size;
+        } else if (value instanceof Map) {
+            int size = HEADER + 4;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                size += of(entry.getKey()) + of(entry.getValue());
+            }
+            return size;
+        } else if (value instanceof Object[]) {
+            int size = HEADER + 4;
+            for (Object element : (Object[]) value) {
+                size += of(element);
+            }
+            return size;
+        } else if (value.getClass().isArray()) {
+            return primitiveArray(value);
+        }
+        return OBJECT_SIZE;
+    }
+
+    private static int primitiveArray(Object value) {
+        int length = Array.getLength(value);
+        Class<?> component = value.getClass().getComponentType();
+        if (component == byte.class) {
+            return HEADER + 4 + align(length);
+        } else if (component == long.class || component == double.class) {
+            return HEADER + 4 + length * 8;
+        }
+        return HEADER + 4 + length * 4;
+    }
+
+    /**
+     * length,UTF-16 chars and the terminator,aligned to 4 bytes
+     */
+    private static int string(String value) {
+        return value == null ? 4 : 4 + align((value.length() + 1) * 2);
+    }
+
+    private static int align(int size) {
+        return (size + 3) & ~3;
+    }
+}
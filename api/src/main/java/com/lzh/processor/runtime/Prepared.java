@@ -0,0 +1,57 @@
+package com.lzh.processor.runtime;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+/**
+ * The handle of a value prepared on an executor,such as the Intent created by generated prepare(Context,Executor),
+ * the RequestData is encoded into bytes by the key with {@link #ENCODED_SUFFIX} on the executor,
+ * or put as createIntent does if it has a field that could not be encoded,such as a Parcelable but not Serializable one.
+ * <p>
+ * {@link #join()} runs the task on the calling thread if the executor has not started it yet,
+ * so it never waits for a busy executor.
+ */
+public class Prepared<T> extends FutureTask<T> {
+
+    /**
+     * the suffix of the key whose extra is the bytes of RequestData.toBytes()
+     */
+    public static final String ENCODED_SUFFIX = ".bytes";
+
+    public Prepared(Callable<T> callable) {
+        super(callable);
+    }
+
+    /**
+     * create and execute the task on executor
+     */
+    public static <T> Prepared<T> submit(Executor executor, Callable<T> callable) {
+        Prepared<T> prepared = new Prepared<>(callable);
+        executor.execute(prepared);
+        return prepared;
+    }
+
+    /**
+     * get the value,run the task on current thread if it is not started
+     * @throws RuntimeException the exception thrown by the task
+     */
+    public T join() {
+        run();
+        try {
+            return get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+}
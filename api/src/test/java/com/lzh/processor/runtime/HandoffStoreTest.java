@@ -0,0 +1,69 @@
+package com.lzh.processor.runtime;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * The values are read without being removed,until they are released,timeout or evicted by budget.
+ */
+public class HandoffStoreTest {
+
+    @Test
+    public void valueIsReadAgain() {
+        HandoffStore store = new HandoffStore(HandoffStore.DEFAULT_BUDGET, HandoffStore.DEFAULT_TIMEOUT);
+        Object value = new int[10];
+        String token = store.put(value);
+        // the receiver recreated with the same extras reads the same value
+        assertSame(value, store.get(token));
+        assertSame(value, store.get(token));
+        assertEquals(1, store.size());
+
+        assertSame(value, store.take(token));
+        assertNull(store.get(token));
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void readRestartsTimeout() throws InterruptedException {
+        HandoffStore store = new HandoffStore(HandoffStore.DEFAULT_BUDGET, 200);
+        String token = store.put("value");
+        for (int i = 0; i < 4; i++) {
+            Thread.sleep(100);
+            assertEquals("value", store.get(token));
+        }
+        Thread.sleep(300);
+        assertNull(store.get(token));
+        assertEquals(0, store.size());
+        assertEquals(0, store.getSize());
+    }
+
+    @Test
+    public void leastRecentlyReadIsEvicted() {
+        HandoffStore store = new HandoffStore(1000, HandoffStore.DEFAULT_TIMEOUT);
+        Object first = new int[100];
+        String t1 = store.put(first);
+        String t2 = store.put(new int[100]);
+        // t1 becomes newer than t2
+        assertSame(first, store.get(t1));
+        String t3 = store.put(new int[100]);
+        assertNull(store.get(t2));
+        assertSame(first, store.get(t1));
+        assertEquals(2, store.size());
+        store.take(t3);
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void tokenOfOtherProcessIsNeverResolved() {
+        HandoffStore store = new HandoffStore(HandoffStore.DEFAULT_BUDGET, HandoffStore.DEFAULT_TIMEOUT);
+        store.put("value");
+        assertFalse(store.isOwner("deadbeef:1"));
+        assertNull(store.get("deadbeef:1"));
+        assertNull(store.get(null));
+        assertEquals(1, store.size());
+    }
+}
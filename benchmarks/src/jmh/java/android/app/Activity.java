@@ -0,0 +1,23 @@
+package android.app;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * JVM stand-in of android.app.Activity for benchmarks
+ */
+public class Activity extends Context {
+
+    private Intent intent;
+
+    public Intent getIntent() {
+        return intent;
+    }
+
+    public void setIntent(Intent intent) {
+        this.intent = intent;
+    }
+
+    public void startActivityForResult(Intent intent, int requestCode) {
+    }
+}
@@ -0,0 +1,7 @@
+package android.content;
+
+/**
+ * JVM stand-in of android.content.Context for benchmarks
+ */
+public class Context {
+}
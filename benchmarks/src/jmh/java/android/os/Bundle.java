@@ -0,0 +1,272 @@
+package android.os;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM stand-in of android.os.Bundle for benchmarks,only the methods used by generated code are provided.
+ * <p>
+ * {@link #marshall()} and {@link #unmarshall(byte[])} emulate the copy through Parcel when an Intent is delivered,
+ * the values are written by java serialization,as Parcel.writeSerializable does for Serializable values,
+ * a Parcelable value is written by its writeToParcel and read back by its CREATOR,as Parcel.writeParcelable does.
+ */
+public class Bundle {
+
+    private final HashMap<String, Object> map;
+
+    public Bundle() {
+        map = new HashMap<>();
+    }
+
+    public Bundle(Bundle bundle) {
+        map = new HashMap<>(bundle.map);
+    }
+
+    public void putAll(Bundle bundle) {
+        map.putAll(bundle.map);
+    }
+
+    public boolean containsKey(String key) {
+        return map.containsKey(key);
+    }
+
+    public Set<String> keySet() {
+        return map.keySet();
+    }
+
+    public Object get(String key) {
+        return map.get(key);
+    }
+
+    public void remove(String key) {
+        map.remove(key);
+    }
+
+    public int size() {
+        return map.size();
+    }
+
+    public void putBoolean(String key, boolean value) {
+        map.put(key, value);
+    }
+
+    public boolean getBoolean(String key) {
+        return getBoolean(key, false);
+    }
+
+    public boolean getBoolean(String key, boolean defaultValue) {
+        Object value = map.get(key);
+        return value == null ? defaultValue : (Boolean) value;
+    }
+
+    public void putInt(String key, int value) {
+        map.put(key, value);
+    }
+
+    public int getInt(String key) {
+        return getInt(key, 0);
+    }
+
+    public int getInt(String key, int defaultValue) {
+        Object value = map.get(key);
+        return value == null ? defaultValue : (Integer) value;
+    }
+
+    public void putLong(String key, long value) {
+        map.put(key, value);
+    }
+
+    public long getLong(String key) {
+        return getLong(key, 0L);
+    }
+
+    public long getLong(String key, long defaultValue) {
+        Object value = map.get(key);
+        return value == null ? defaultValue : (Long) value;
+    }
+
+    public void putDouble(String key, double value) {
+        map.put(key, value);
+    }
+
+    public double getDouble(String key) {
+        return getDouble(key, 0D);
+    }
+
+    public double getDouble(String key, double defaultValue) {
+        Object value = map.get(key);
+        return value == null ? defaultValue : (Double) value;
+    }
+
+    public void putString(String key, String value) {
+        map.put(key, value);
+    }
+
+    public String getString(String key) {
+        return (String) map.get(key);
+    }
+
+    public String getString(String key, String defaultValue) {
+        Object value = map.get(key);
+        return value == null ? defaultValue : (String) value;
+    }
+
+    public void putByteArray(String key, byte[] value) {
+        map.put(key, value);
+    }
+
+    public byte[] getByteArray(String key) {
+        return (byte[]) map.get(key);
+    }
+
+    public void putIntArray(String key, int[] value) {
+        map.put(key, value);
+    }
+
+    public int[] getIntArray(String key) {
+        return (int[]) map.get(key);
+    }
+
+    public void putLongArray(String key, long[] value) {
+        map.put(key, value);
+    }
+
+    public long[] getLongArray(String key) {
+        return (long[]) map.get(key);
+    }
+
+    public void putStringArray(String key, String[] value) {
+        map.put(key, value);
+    }
+
+    public String[] getStringArray(String key) {
+        return (String[]) map.get(key);
+    }
+
+    public void putStringArrayList(String key, ArrayList<String> value) {
+        map.put(key, value);
+    }
+
+    public ArrayList<String> getStringArrayList(String key) {
+        @SuppressWarnings("unchecked")
+        ArrayList<String> value = (ArrayList<String>) map.get(key);
+        return value;
+    }
+
+    public void putIntegerArrayList(String key, ArrayList<Integer> value) {
+        map.put(key, value);
+    }
+
+    public ArrayList<Integer> getIntegerArrayList(String key) {
+        @SuppressWarnings("unchecked")
+        ArrayList<Integer> value = (ArrayList<Integer>) map.get(key);
+        return value;
+    }
+
+    public void putSerializable(String key, Serializable value) {
+        map.put(key, value);
+    }
+
+    public Serializable getSerializable(String key) {
+        return (Serializable) map.get(key);
+    }
+
+    public void putParcelable(String key, Parcelable value) {
+        map.put(key, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends Parcelable> T getParcelable(String key) {
+        return (T) map.get(key);
+    }
+
+    public void putBundle(String key, Bundle value) {
+        map.put(key, value);
+    }
+
+    public Bundle getBundle(String key) {
+        return (Bundle) map.get(key);
+    }
+
+    /**
+     * write all of the values as Parcel does when the Bundle is delivered
+     */
+    public byte[] marshall() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            HashMap<String, Object> values = new HashMap<>(map);
+            for (Map.Entry<String, Object> entry : values.entrySet()) {
+                if (entry.getValue() instanceof Parcelable) {
+                    entry.setValue(new Parcelled((Parcelable) entry.getValue()));
+                }
+            }
+            output.writeObject(values);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * read the Bundle written by {@link #marshall()}
+     */
+    @SuppressWarnings("unchecked")
+    public static Bundle unmarshall(byte[] data) {
+        Bundle bundle = new Bundle();
+        try (ObjectInputStream input = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            bundle.map.putAll((HashMap<String, Object>) input.readObject());
+            for (Map.Entry<String, Object> entry : bundle.map.entrySet()) {
+                if (entry.getValue() instanceof Parcelled) {
+                    entry.setValue(((Parcelled) entry.getValue()).read());
+                }
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        return bundle;
+    }
+
+    /**
+     * a Parcelable value written by Parcel,with the class name to find its CREATOR
+     */
+    private static final class Parcelled implements Serializable {
+
+        private static final Map<String, Parcelable.Creator<?>> CREATORS = new ConcurrentHashMap<>();
+
+        private final String className;
+        private final byte[] data;
+
+        Parcelled(Parcelable value) {
+            Parcel parcel = Parcel.obtain();
+            value.writeToParcel(parcel, 0);
+            this.className = value.getClass().getName();
+            this.data = parcel.marshall();
+        }
+
+        Object read() throws ClassNotFoundException {
+            Parcelable.Creator<?> creator = CREATORS.get(className);
+            if (creator == null) {
+                try {
+                    // Parcel looks up the CREATOR by reflection once per class too
+                    creator = (Parcelable.Creator<?>) Class.forName(className).getField("CREATOR").get(null);
+                } catch (NoSuchFieldException | IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+                CREATORS.put(className, creator);
+            }
+            Parcel parcel = Parcel.obtain();
+            parcel.unmarshall(data, 0, data.length);
+            parcel.setDataPosition(0);
+            return creator.createFromParcel(parcel);
+        }
+    }
+}
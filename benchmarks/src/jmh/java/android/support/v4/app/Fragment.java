@@ -0,0 +1,28 @@
+package android.support.v4.app;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.os.Bundle;
+
+/**
+ * JVM stand-in of android.support.v4.app.Fragment for benchmarks
+ */
+public class Fragment {
+
+    private Bundle arguments;
+
+    public Activity getActivity() {
+        return null;
+    }
+
+    public Bundle getArguments() {
+        return arguments;
+    }
+
+    public void setArguments(Bundle arguments) {
+        this.arguments = arguments;
+    }
+
+    public void startActivityForResult(Intent intent, int requestCode) {
+    }
+}
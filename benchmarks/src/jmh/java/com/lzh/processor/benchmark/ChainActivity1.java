@@ -0,0 +1,13 @@
+package com.lzh.processor.benchmark;
+
+import android.app.Activity;
+
+import com.lzh.processor.annoapi.Field;
+import com.lzh.processor.annoapi.Params;
+
+/**
+ * level 1 of the 5 level hierarchy of InheritedChainBenchmark
+ */
+@Params(fields = @Field(name = "level1", type = int.class))
+public abstract class ChainActivity1 extends Activity {
+}
@@ -0,0 +1,11 @@
+package com.lzh.processor.benchmark;
+
+import com.lzh.processor.annoapi.Field;
+import com.lzh.processor.annoapi.Params;
+
+/**
+ * level 2 of the 5 level hierarchy of InheritedChainBenchmark
+ */
+@Params(fields = @Field(name = "level2", type = int.class))
+public abstract class ChainActivity2 extends ChainActivity1 {
+}
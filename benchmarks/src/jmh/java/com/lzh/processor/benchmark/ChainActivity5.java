@@ -0,0 +1,11 @@
+package com.lzh.processor.benchmark;
+
+import com.lzh.processor.annoapi.Field;
+import com.lzh.processor.annoapi.Params;
+
+/**
+ * the deepest level of the 5 level hierarchy of InheritedChainBenchmark
+ */
+@Params(fields = @Field(name = "level5", type = int.class))
+public class ChainActivity5 extends ChainActivity4 {
+}
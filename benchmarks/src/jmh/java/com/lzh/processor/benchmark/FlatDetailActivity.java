@@ -0,0 +1,21 @@
+package com.lzh.processor.benchmark;
+
+import android.app.Activity;
+
+import com.lzh.processor.annoapi.DataFormat;
+import com.lzh.processor.annoapi.Field;
+import com.lzh.processor.annoapi.FieldType;
+import com.lzh.processor.annoapi.Params;
+
+/**
+ * the target of RequestDataBenchmark,every field is put into intent as a typed extra
+ */
+@Params(format = DataFormat.flat, fields = {
+        @Field(name = "id", type = long.class),
+        @Field(name = "count", type = int.class),
+        @Field(name = "title", type = String.class),
+        @Field(name = "tags", type = String.class, fieldType = FieldType.list),
+        @Field(name = "scores", type = int.class, fieldType = FieldType.array)
+})
+public class FlatDetailActivity extends Activity {
+}
@@ -0,0 +1,75 @@
+package com.lzh.processor.benchmark;
+
+import android.content.Intent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * createIntent and getData of the 5 level hierarchy {@link ChainActivity1} to {@link ChainActivity5},
+ * every level puts its own RequestData into the same intent by fillIntent.
+ * <ul>
+ * <li>createIntentTwoLevels: only the deepest and the root level are set,the levels between are never created</li>
+ * <li>createIntentAllLevels: every level is set</li>
+ * <li>getDataAllLevels: the delivered intent is read by getData of every level,
+ * it includes {@link Intent#unmarshall(byte[])},which is measured alone by unmarshall</li>
+ * </ul>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InheritedChainBenchmark {
+
+    private byte[] delivered;
+
+    @Setup
+    public void setup() {
+        delivered = ChainActivity5_Dispatcher.create()
+                .setLevel5(5).setLevel4(4).setLevel3(3).setLevel2(2).setLevel1(1)
+                .createIntent(null)
+                .marshall();
+    }
+
+    @Benchmark
+    public Intent createIntentTwoLevels() {
+        return ChainActivity5_Dispatcher.create()
+                .setLevel5(5).setLevel1(1)
+                .createIntent(null);
+    }
+
+    @Benchmark
+    public Intent createIntentAllLevels() {
+        return ChainActivity5_Dispatcher.create()
+                .setLevel5(5).setLevel4(4).setLevel3(3).setLevel2(2).setLevel1(1)
+                .createIntent(null);
+    }
+
+    @Benchmark
+    public Intent unmarshall() {
+        return Intent.unmarshall(delivered);
+    }
+
+    @Benchmark
+    public void getDataAllLevels(Blackhole blackhole) {
+        Intent intent = Intent.unmarshall(delivered);
+        blackhole.consume(ChainActivity5_Dispatcher.getData(intent).getLevel5());
+        blackhole.consume(ChainActivity4_Dispatcher.getData(intent).getLevel4());
+        blackhole.consume(ChainActivity3_Dispatcher.getData(intent).getLevel3());
+        blackhole.consume(ChainActivity2_Dispatcher.getData(intent).getLevel2());
+        blackhole.consume(ChainActivity1_Dispatcher.getData(intent).getLevel1());
+    }
+}
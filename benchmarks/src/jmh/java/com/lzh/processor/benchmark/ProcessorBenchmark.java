@@ -0,0 +1,155 @@
+package com.lzh.processor.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+/**
+ * end-to-end annotation processing by in-process javac over synthetic sources,
+ * the sources are activities in serializable and flat format and fragments,a third of them extends another one
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProcessorBenchmark {
+
+    private static final String PACKAGE = "bench";
+    private static final String PROCESSOR = "com.lzh.processor.compiler.Compiler";
+
+    /**
+     * the count of @Params classes
+     */
+    @Param({"10", "100", "1000"})
+    public int classes;
+
+    private JavaCompiler compiler;
+    private StandardJavaFileManager fileManager;
+    private File root;
+    private List<File> sources;
+    private List<String> options;
+
+    @Setup
+    public void setup() throws IOException {
+        compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("The benchmark should be run on JDK");
+        }
+        fileManager = compiler.getStandardFileManager(null, null, Charset.forName("UTF-8"));
+        root = Files.createTempDirectory("processor-benchmark").toFile();
+        File sourceDir = new File(root, "src/" + PACKAGE);
+        File generatedDir = new File(root, "generated");
+        File classesDir = new File(root, "classes");
+        if (!sourceDir.mkdirs() || !generatedDir.mkdirs() || !classesDir.mkdirs()) {
+            throw new IOException("Could not create directories in " + root);
+        }
+        sources = new ArrayList<>();
+        for (int i = 0; i < classes; i++) {
+            File file = new File(sourceDir, className(i) + ".java");
+            write(file, createSource(i));
+            sources.add(file);
+        }
+        // the processor is set explicitly,the processor of JMH is also on the class path
+        options = Arrays.asList("-classpath", System.getProperty("java.class.path"),
+                "-processor", PROCESSOR,
+                "-s", generatedDir.getAbsolutePath(),
+                "-d", classesDir.getAbsolutePath(),
+                "-implicit:none", "-nowarn", "-encoding", "UTF-8");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        fileManager.close();
+        delete(root);
+    }
+
+    @Benchmark
+    public boolean process() {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+                fileManager.getJavaFileObjectsFromFiles(sources)).call();
+        if (!success) {
+            throw new IllegalStateException("Compile failed: " + diagnostics.getDiagnostics());
+        }
+        return success;
+    }
+
+    private static String className(int index) {
+        return "Target" + index;
+    }
+
+    /**
+     * every third class is a fragment,the others are activities,the class at index 3n+1 extends the one at 3n
+     */
+    private static String createSource(int index) {
+        String name = className(index);
+        boolean fragment = index % 3 == 2;
+        String parent;
+        if (fragment) {
+            parent = "android.app.Fragment";
+        } else if (index % 3 == 1) {
+            parent = className(index - 1);
+        } else {
+            parent = "android.app.Activity";
+        }
+        String format = index % 2 == 0 ? "serializable" : "flat";
+        return "package " + PACKAGE + ";\n"
+                + "\n"
+                + "import com.lzh.processor.annoapi.*;\n"
+                + "\n"
+                + "@Params(format = DataFormat." + format + ", fields = {\n"
+                + "        @Field(name = \"id" + index + "\", type = long.class),\n"
+                + "        @Field(name = \"count" + index + "\", type = int.class, defValue = \"1\"),\n"
+                + "        @Field(name = \"title" + index + "\", type = String.class),\n"
+                + "        @Field(name = \"tags" + index + "\", type = String.class, fieldType = FieldType.list),\n"
+                + "        @Field(name = \"scores" + index + "\", type = int.class, fieldType = FieldType.array)\n"
+                + "})\n"
+                + "public class " + name + " extends " + parent + " {\n"
+                + "}\n";
+    }
+
+    private static void write(File file, String content) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8")) {
+            writer.write(content);
+        }
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,123 @@
+package com.lzh.processor.benchmark;
+
+import com.lzh.processor.reflect.Accessors;
+import com.lzh.processor.reflect.Reflect;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * throughput of call,field,create and as of {@link Reflect} in both invoke modes,
+ * compared with the accessors and the direct access,run with -prof gc to see the allocation
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReflectBenchmark {
+
+    private static final Accessors.Invoker1<Target, Integer, Integer> ADD = Reflect.accessor(Target.class, "add", int.class);
+    private static final Accessors.Getter<Target, Integer> VALUE = Reflect.getter(Target.class, "value");
+    private static final Accessors.Setter<Target, Integer> SET_VALUE = Reflect.setter(Target.class, "value");
+    private static final Accessors.Creator<Target> CREATOR = Reflect.creator(Target.class);
+
+    @Param({"REFLECTION", "METHOD_HANDLE"})
+    public Reflect.InvokeMode mode;
+
+    private Target target;
+    private Adder adder;
+
+    @Setup
+    public void setup() {
+        Reflect.setInvokeMode(mode);
+        target = new Target();
+        adder = Reflect.on(target).as(Adder.class);
+    }
+
+    @Benchmark
+    public int directCall() {
+        return target.add(1);
+    }
+
+    @Benchmark
+    public int reflectCall() {
+        return Reflect.on(target).call("add", 1).<Integer>get();
+    }
+
+    @Benchmark
+    public int accessorCall() {
+        return ADD.invoke(target, 1);
+    }
+
+    @Benchmark
+    public int reflectGetField() {
+        return Reflect.on(target).field("value").<Integer>get();
+    }
+
+    @Benchmark
+    public Reflect reflectSetField() {
+        return Reflect.on(target).set("value", 1);
+    }
+
+    @Benchmark
+    public int getterField() {
+        return VALUE.get(target);
+    }
+
+    @Benchmark
+    public Target setterField() {
+        SET_VALUE.set(target, 1);
+        return target;
+    }
+
+    @Benchmark
+    public Target directCreate() {
+        return new Target();
+    }
+
+    @Benchmark
+    public Target reflectCreate() {
+        return Reflect.on(Target.class).create().get();
+    }
+
+    @Benchmark
+    public Target creatorCreate() {
+        return CREATOR.create();
+    }
+
+    @Benchmark
+    public int asCall() {
+        return adder.add(1);
+    }
+
+    @Benchmark
+    public int asCreateAndCall() {
+        return Reflect.on(target).as(Adder.class).add(1);
+    }
+
+    public interface Adder {
+        int add(int delta);
+    }
+
+    public static class Target {
+
+        public int value;
+
+        public int add(int delta) {
+            return value += delta;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.lzh.processor.benchmark;
+
+import android.content.Intent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * encode RequestData into intent and decode it from the delivered intent,
+ * the delivery through Parcel is emulated by {@link Intent#marshall()} and {@link Intent#unmarshall(byte[])}.
+ * <ul>
+ * <li>serializable: RequestData is put as a whole by createIntent</li>
+ * <li>parcelable: RequestData is put as a Parcelable by createIntent</li>
+ * <li>flat: every field is put as a typed extra by createIntent</li>
+ * <li>binary: RequestData is put as bytes by encodeIntent</li>
+ * </ul>
+ * The inherited chain is measured by {@link InheritedChainBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestDataBenchmark {
+
+    /**
+     * the size of tags and scores
+     */
+    @Param({"4", "64"})
+    public int size;
+
+    private ArrayList<String> tags;
+    private int[] scores;
+    private byte[] serializable;
+    private byte[] parcelable;
+    private byte[] flat;
+    private byte[] binary;
+
+    @Setup
+    public void setup() {
+        tags = new ArrayList<>();
+        scores = new int[size];
+        for (int i = 0; i < size; i++) {
+            tags.add("tag" + i);
+            scores[i] = i * 31;
+        }
+        serializable = encodeSerializable();
+        parcelable = encodeParcelable();
+        flat = encodeFlat();
+        binary = encodeBinary();
+    }
+
+    @Benchmark
+    public byte[] encodeSerializable() {
+        return DetailActivity_Dispatcher.create()
+                .setId(1024L).setCount(size).setTitle("title").setTags(tags).setScores(scores)
+                .createIntent(null)
+                .marshall();
+    }
+
+    @Benchmark
+    public byte[] encodeParcelable() {
+        return ParcelDetailActivity_Dispatcher.create()
+                .setId(1024L).setCount(size).setTitle("title").setTags(tags).setScores(scores)
+                .createIntent(null)
+                .marshall();
+    }
+
+    @Benchmark
+    public byte[] encodeFlat() {
+        return FlatDetailActivity_Dispatcher.create()
+                .setId(1024L).setCount(size).setTitle("title").setTags(tags).setScores(scores)
+                .createIntent(null)
+                .marshall();
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        Intent intent = new Intent(null, DetailActivity.class);
+        DetailActivity_Dispatcher.create()
+                .setId(1024L).setCount(size).setTitle("title").setTags(tags).setScores(scores)
+                .encodeIntent(intent);
+        return intent.marshall();
+    }
+
+    @Benchmark
+    public void decodeSerializable(Blackhole blackhole) {
+        DetailActivity_Dispatcher.RequestData data = DetailActivity_Dispatcher.getData(Intent.unmarshall(serializable));
+        consume(blackhole, data.getId(), data.getCount(), data.getTitle(), data.getTags(), data.getScores());
+    }
+
+    @Benchmark
+    public void decodeParcelable(Blackhole blackhole) {
+        ParcelDetailActivity_Dispatcher.RequestData data = ParcelDetailActivity_Dispatcher.getData(Intent.unmarshall(parcelable));
+        consume(blackhole, data.getId(), data.getCount(), data.getTitle(), data.getTags(), data.getScores());
+    }
+
+    @Benchmark
+    public void decodeFlat(Blackhole blackhole) {
+        FlatDetailActivity_Dispatcher.RequestData data = FlatDetailActivity_Dispatcher.getData(Intent.unmarshall(flat));
+        consume(blackhole, data.getId(), data.getCount(), data.getTitle(), data.getTags(), data.getScores());
+    }
+
+    @Benchmark
+    public void decodeBinary(Blackhole blackhole) {
+        DetailActivity_Dispatcher.RequestData data = DetailActivity_Dispatcher.getData(Intent.unmarshall(binary));
+        consume(blackhole, data.getId(), data.getCount(), data.getTitle(), data.getTags(), data.getScores());
+    }
+
+    private static void consume(Blackhole blackhole, long id, int count, String title, Object tags, Object scores) {
+        blackhole.consume(id);
+        blackhole.consume(count);
+        blackhole.consume(title);
+        blackhole.consume(tags);
+        blackhole.consume(scores);
+    }
+}
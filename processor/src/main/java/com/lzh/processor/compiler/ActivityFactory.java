@@ -1,12 +1,19 @@
 package com.lzh.processor.compiler;
 
-
+import com.lzh.processor.annoapi.DataFormat;
+import com.lzh.processor.data.FieldData;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
-import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import javax.lang.model.element.Modifier;
 
@@ -19,6 +26,9 @@ public class ActivityFactory extends FileFactory{
 
     private final static String START_METHOD = "start";
     private final static String CREATE_INTENT = "createIntent";
+    private final static String FILL_INTENT = "fillIntent";
+    private final static String ENCODE_INTENT = "encodeIntent";
+    private final static String PREPARE_METHOD = "prepare";
     private final static String GETDATA_METHOD = "getData";
 
     private final static String ACTIVITY_NAME = "android.app.Activity";
@@ -26,11 +36,23 @@ public class ActivityFactory extends FileFactory{
     private final static String FRAGMENT_NAME = "android.app.Fragment";
     private final static String V4FRAGMENT_NAME = "android.support.v4.app.Fragment";
     private final static String INTENT_NAME = "android.content.Intent";
+    private final static ClassName PREPARED = ClassName.get("com.lzh.processor.runtime", "Prepared");
 
     private final static String SUFFIX = "_Dispatcher";
 
+    /**
+     * every field passed by value could be written by toBytes(),
+     * a Parcelable or other type that is not Serializable fails the java serialization it falls back to
+     */
+    private final boolean binaryEncodable;
+
     public ActivityFactory(ElementParser parser) {
         super(parser);
+        boolean encodable = true;
+        for (FieldData data : parser.getFieldList()) {
+            encodable &= data.isReference() || data.isSerializable();
+        }
+        this.binaryEncodable = encodable;
     }
 
     @Override
@@ -38,7 +60,7 @@ public class ActivityFactory extends FileFactory{
         return SUFFIX;
     }
 
-    public void generateCode() throws IOException {
+    public JavaFile generateCode() {
         TypeSpec.Builder typeBuilder = generateTypeBuilder();
         // add field
         addFields(typeBuilder);
@@ -46,46 +68,96 @@ public class ActivityFactory extends FileFactory{
             // add class RequestData
             typeBuilder.addType(generateRequestData());
             // add get request data method
+            typeBuilder.addField(createDataCacheField(getTypeName(INTENT_NAME)));
             typeBuilder.addMethod(createGetDataMethod());
         }
         // create private constructor method
         typeBuilder.addMethod(createPrivateConstructor());
         // add create method
         typeBuilder.addMethod(createMethod());
+        // add reset method
+        typeBuilder.addMethod(createResetMethod(CodeBlock.builder()
+                .addStatement("$L = -1", REQUEST_CODE_FIELD_NAME).build()));
+        if (reusable) {
+            addReuse(typeBuilder);
+        }
         // add setter method
         addParamsSetMethod(typeBuilder);
         // add request code method
         addRequestCodeMethod(typeBuilder);
         // add create intent method
         addCreateIntentMethod(typeBuilder);
+        // add encode intent method
+        addEncodeIntentMethod(typeBuilder);
         if (!isAbstract) {
+            // add prepare intent method
+            addPrepareMethod(typeBuilder);
             // add start activity method
             addStartMethod(typeBuilder);
         }
 
 
-        build(typeBuilder);
+        return build(typeBuilder);
 
     }
 
 
 
+    @Override
+    String getExtrasTarget() {
+        return INTENT_NAME;
+    }
+
+    /**
+     * getData reads the bytes put by encodeIntent and prepare,unless a field could not be encoded
+     */
+    @Override
+    boolean needBinaryCodec() {
+        return binaryEncodable;
+    }
+
+    /**
+     * decode RequestData from intent once,the result is cached by the intent
+     */
     private MethodSpec createGetDataMethod() {
-        TypeName intent = getTypeName(INTENT_NAME);
-        TypeName requestData = getTypeName(REQUEST_DATA_CLASS);
-        String paramsName = "data";
-        return MethodSpec.methodBuilder(GETDATA_METHOD)
-                .addModifiers(Modifier.PUBLIC,Modifier.STATIC)
-                .returns(getTypeName(REQUEST_DATA_CLASS))
-                .addParameter(intent, paramsName)
-                .beginControlFlow("if (data == null || data.getSerializableExtra(TAG) == null)")
-                .addStatement("return new $T()", requestData)
-                .endControlFlow()
-                .addJavadoc("receive passed data,get data from intent by tag : $L",TAG_FIELD)
-                .beginControlFlow("else")
-                .addStatement("return ($T) data.getSerializableExtra(TAG)", requestData)
-                .endControlFlow()
-                .build();
+        CodeBlock.Builder decode = CodeBlock.builder();
+        if (binaryEncodable) {
+            decode.addStatement("byte[] bytes = data.getByteArrayExtra($L + $T.ENCODED_SUFFIX)", TAG_FIELD, PREPARED)
+                    .beginControlFlow("if (bytes != null)")
+                    .addStatement("requestData = $T.$L(bytes)", requestDataClassName, FROM_BYTES_METHOD);
+            if (hasReference) {
+                decode.addStatement("requestData.$L(data)", RESOLVE_REFERENCES_METHOD);
+            }
+            decode.nextControlFlow("else");
+        }
+        if (format == DataFormat.flat) {
+            decode.addStatement("requestData = new $T()", requestDataClassName)
+                    .addStatement("$T extras = data.getExtras()", getTypeName(FragmentFactory.BUNDLE_NAME))
+                    .beginControlFlow("if (extras != null)")
+                    .addStatement("requestData.$L(extras)", READ_METHOD)
+                    .endControlFlow();
+        } else {
+            String getExtra = format == DataFormat.parcelable ? "getParcelableExtra" : "getSerializableExtra";
+            decode.addStatement("requestData = ($T) data.$L($L)", requestDataClassName, getExtra, TAG_FIELD)
+                    .add(createResolveSpilledData("", "data.getStringExtra($L)"))
+                    .beginControlFlow("if (requestData == null)")
+                    .addStatement("requestData = new $T()", requestDataClassName)
+                    .endControlFlow();
+            if (hasReference) {
+                decode.addStatement("requestData.$L(data)", RESOLVE_REFERENCES_METHOD);
+            }
+        }
+        if (binaryEncodable) {
+            decode.endControlFlow();
+        }
+        MethodSpec.Builder builder = createCachedGetDataMethod(GETDATA_METHOD, getTypeName(INTENT_NAME), "data", decode.build())
+                .toBuilder()
+                .addJavadoc("receive passed data,get data from intent by tag : $L,\n", TAG_FIELD)
+                .addJavadoc("the same instance is returned for the same intent");
+        if (binaryEncodable) {
+            builder.addJavadoc(",\nthe bytes encoded by $L are read first", ENCODE_INTENT);
+        }
+        return builder.addJavadoc("\n").build();
     }
 
     private void addCreateIntentMethod(TypeSpec.Builder typeBuilder) {
@@ -95,17 +167,15 @@ public class ActivityFactory extends FileFactory{
                 .addJavadoc("Create intent,put the instance of RequestData into it,and parent class request data")
                 .returns(getTypeName(INTENT_NAME))
                 .addParameter(getTypeName(CONTEXT_NAME), "context")
+                .addCode(checkGeneration())
                 .addStatement("$T intent = new $T($L,$L.class)",
-                        intent, intent, "context", parser.getElement().getSimpleName());
-
-        if (generateParentClassName != null) {
-            builder.addStatement("$T parentIntent = $L.$L(context)",intent,PARENT_CLASS_FIELD_NAME,CREATE_INTENT);
-            builder.addStatement("intent.putExtras(parentIntent)");
-        }
-        if (!isEmptyParams) {
-            builder.addStatement("intent.putExtra($L,$L)", TAG_FIELD, REQUEST_DATA_FIELD_NAME);
+                        intent, intent, "context", parser.getClzName())
+                .addStatement("$L(intent)", FILL_INTENT);
+        if (reusable) {
+            builder.addStatement("$L()", RECYCLE_METHOD);
         }
         builder.addStatement("return intent");
+        typeBuilder.addMethod(createFillMethod(FILL_INTENT, intent, "intent", createPutIntent()));
 
 //        MethodSpec builder = MethodSpec.methodBuilder(CREATE_INTENT)
 //                .addModifiers(Modifier.PRIVATE)
@@ -120,6 +190,77 @@ public class ActivityFactory extends FileFactory{
         typeBuilder.addMethod(builder.build());
     }
 
+    /**
+     * the statements of fillIntent to put RequestData of this class into intent
+     */
+    private CodeBlock createPutIntent() {
+        CodeBlock.Builder put = CodeBlock.builder();
+        if (!isEmptyParams && format == DataFormat.flat) {
+            put.add(createPutData("intent", true, CodeBlock.builder()
+                    .addStatement("$L.$L(intent)", REQUEST_DATA_FIELD_NAME, WRITE_METHOD).build()));
+        } else if (!isEmptyParams) {
+            put.add(createPutData("intent", true, CodeBlock.builder()
+                    .addStatement("intent.putExtra($L,$L)", TAG_FIELD, REQUEST_DATA_FIELD_NAME).build()));
+            if (hasReference) {
+                put.addStatement("$L.$L(intent)", REQUEST_DATA_FIELD_NAME, PUT_REFERENCES_METHOD);
+            }
+        }
+        return put.build();
+    }
+
+    /**
+     * put RequestData as bytes of toBytes(),Intent keeps the bytes as they are,
+     * so nothing is serialized when the activity is started.
+     * the RequestData that could not be encoded is put as fillIntent does,every level of parent classes decides it alone
+     */
+    private void addEncodeIntentMethod(TypeSpec.Builder typeBuilder) {
+        CodeBlock.Builder put = CodeBlock.builder();
+        if (!binaryEncodable) {
+            put.add(createPutIntent());
+        } else if (!isEmptyParams) {
+            put.addStatement("intent.putExtra($L + $T.ENCODED_SUFFIX, $L.$L())",
+                    TAG_FIELD, PREPARED, REQUEST_DATA_FIELD_NAME, TO_BYTES_METHOD);
+            if (hasReference) {
+                put.addStatement("$L.$L(intent)", REQUEST_DATA_FIELD_NAME, PUT_REFERENCES_METHOD);
+            }
+        }
+        typeBuilder.addMethod(createFillMethod(ENCODE_INTENT, getTypeName(INTENT_NAME), "intent", put.build())
+                .toBuilder()
+                .addJavadoc(binaryEncodable ? "as encoded bytes\n" : "as fillIntent does,some fields could not be encoded as bytes\n")
+                .build());
+    }
+
+    /**
+     * create and encode the intent on executor,see {@link #addEncodeIntentMethod(TypeSpec.Builder)}
+     */
+    private void addPrepareMethod(TypeSpec.Builder typeBuilder) {
+        TypeName intent = getTypeName(INTENT_NAME);
+        TypeSpec task = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(Callable.class), intent))
+                .addMethod(MethodSpec.methodBuilder("call")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(intent)
+                        .addStatement("$T intent = new $T(context,$L.class)", intent, intent, parser.getClzName())
+                        .addStatement("$L(intent)", ENCODE_INTENT)
+                        .addStatement("return intent")
+                        .build())
+                .build();
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(PREPARE_METHOD)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("create intent on executor,the data is encoded there,\n")
+                .addJavadoc("so that start with the prepared intent does not serialize it on current thread.\n")
+                .addJavadoc("do not modify this instance after it is prepared\n")
+                .returns(ParameterizedTypeName.get(PREPARED, intent))
+                .addParameter(ParameterSpec.builder(getTypeName(CONTEXT_NAME), "context", Modifier.FINAL).build())
+                .addParameter(Executor.class, "executor");
+        if (reusable) {
+            // the instance is used by executor,so it leaves the pool instead of being recycled
+            builder.addCode(leavePool());
+        }
+        typeBuilder.addMethod(builder.addStatement("return $T.submit(executor, $L)", PREPARED, task).build());
+    }
+
     private void addStartMethod(TypeSpec.Builder typeBuilder) {
         String paramsName = "target";
         MethodSpec.Builder startByActivity = createStartMethodBuilder(ACTIVITY_NAME, paramsName,paramsName);
@@ -129,6 +270,16 @@ public class ActivityFactory extends FileFactory{
                         .addJavadoc("launcher a Activity by $L",ACTIVITY_NAME)
                         .build()
         );
+        typeBuilder.addMethod(MethodSpec.methodBuilder(START_METHOD)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("launcher a Activity by $L with the intent created by $L,\n", ACTIVITY_NAME, PREPARE_METHOD)
+                .addJavadoc("the intent is created on current thread if the executor has not started it\n")
+                .returns(generateClassName)
+                .addParameter(getTypeName(ACTIVITY_NAME), paramsName)
+                .addParameter(ParameterizedTypeName.get(PREPARED, getTypeName(INTENT_NAME)), "prepared")
+                .addStatement("target.startActivityForResult(prepared.join(),$L)", REQUEST_CODE_FIELD_NAME)
+                .addStatement("return this")
+                .build());
         MethodSpec.Builder startByFragment = createStartMethodBuilder(FRAGMENT_NAME, paramsName, paramsName + ".getActivity()");
         typeBuilder.addMethod(
                 startByFragment.addStatement("target.startActivityForResult(intent,$L)",REQUEST_CODE_FIELD_NAME)
@@ -148,11 +299,15 @@ public class ActivityFactory extends FileFactory{
 
     private MethodSpec.Builder createStartMethodBuilder(String paramsType,String paramsName, String context) {
         TypeName intent = getTypeName(INTENT_NAME);
-        return MethodSpec.methodBuilder(START_METHOD)
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(START_METHOD)
                 .addModifiers(Modifier.PUBLIC)
                 .returns(generateClassName)
-                .addParameter(getTypeName(paramsType),paramsName)
-                .addStatement("$T intent = $L($L)",intent,CREATE_INTENT,context);
+                .addParameter(getTypeName(paramsType),paramsName);
+        if (reusable) {
+            // the request code is reset when this instance is recycled by createIntent
+            builder.addStatement("int $L = this.$L", REQUEST_CODE_FIELD_NAME, REQUEST_CODE_FIELD_NAME);
+        }
+        return builder.addStatement("$T intent = $L($L)",intent,CREATE_INTENT,context);
     }
 
     private void addRequestCodeMethod(TypeSpec.Builder typeBuilder) {
@@ -161,6 +316,7 @@ public class ActivityFactory extends FileFactory{
                 .addJavadoc("Set request code,use -1 if not defined")
                 .returns(generateClassName)
                 .addParameter(TypeName.INT, REQUEST_CODE_FIELD_NAME)
+                .addCode(checkGeneration())
                 .addStatement("this.$L = $L", REQUEST_CODE_FIELD_NAME, REQUEST_CODE_FIELD_NAME)
                 .addStatement("return this")
                 .build();
@@ -179,7 +335,7 @@ public class ActivityFactory extends FileFactory{
                 .build());
         if (!isEmptyParams) {
             // add RequestData filed
-            typeBuilder.addField(FieldSpec.builder(getTypeName(REQUEST_DATA_CLASS), REQUEST_DATA_FIELD_NAME, Modifier.PRIVATE)
+            typeBuilder.addField(FieldSpec.builder(requestDataClassName, REQUEST_DATA_FIELD_NAME, Modifier.PRIVATE)
                     .addJavadoc("The instance of RequestData that is the container of whole filed")
                     .build());
         }
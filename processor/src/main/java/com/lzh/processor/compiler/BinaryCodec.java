@@ -0,0 +1,200 @@
+package com.lzh.processor.compiler;
+
+import com.lzh.processor.annoapi.FieldType;
+import com.lzh.processor.data.FieldData;
+import com.lzh.processor.util.StringUtils;
+import com.lzh.processor.util.TypeNames;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Create the statements of RequestData.toBytes()/fromBytes(byte[]) for a field,
+ * the compact binary format written by com.lzh.processor.runtime.BinaryWriter.
+ * <p>
+ * Every field is tagged by an id derived from its name and type,so the data written by an older or newer
+ * RequestData could still be read: the unknown fields are skipped,the absent fields keep their
+ * default values,and a field whose type has been changed has another id,so it is skipped too
+ * instead of being read by the reader of the new type.
+ * The data written by the same schema hash has no reason to have an unknown tag,so it fails the decoding.
+ * Primitives,String,their arrays and String collections have compact encodings,
+ * the other types are written by java serialization.
+ */
+class BinaryCodec {
+
+    static final ClassName WRITER = ClassName.get("com.lzh.processor.runtime", "BinaryWriter");
+    static final ClassName READER = ClassName.get("com.lzh.processor.runtime", "BinaryReader");
+
+    /**
+     * ids are 16 bits,so that a tag takes at most 3 bytes
+     */
+    private static final int ID_MASK = 0xFFFF;
+
+    private final FieldData data;
+    private final TypeName fieldType;
+    /**
+     * the suffix of BinaryWriter.writeXxx,null if it is written by java serialization
+     */
+    private final String writeMethod;
+    /**
+     * the suffix of BinaryReader.readXxx
+     */
+    private final String readMethod;
+    private final String wireType;
+
+    BinaryCodec(FieldData data, TypeName fieldType) {
+        this.data = data;
+        this.fieldType = fieldType;
+        TypeName type = data.getType();
+        TypeName primitive = type.isBoxedPrimitive() ? type.unbox() : type;
+        String method = null;
+        String read = null;
+        String wire = "LEN";
+        switch (data.getFieldType()) {
+            case array:
+                if (type.equals(TypeName.BYTE)) {
+                    method = read = "Bytes";
+                } else if (type.isPrimitive() || type.equals(TypeNames.STRING)) {
+                    method = read = simpleName(type) + "Array";
+                }
+                break;
+            case list:
+                if (type.equals(TypeNames.STRING)) {
+                    method = "Strings";
+                    read = "StringList";
+                }
+                break;
+            case set:
+                if (type.equals(TypeNames.STRING)) {
+                    method = "Strings";
+                    read = "StringSet";
+                }
+                break;
+            case Serializable:
+            default:
+                if (type.equals(TypeNames.STRING)) {
+                    method = read = "String";
+                } else if (primitive.isPrimitive()) {
+                    read = simpleName(primitive);
+                    // byte and short are written as int,read back by readByte/readShort
+                    method = primitive.equals(TypeName.BYTE) || primitive.equals(TypeName.SHORT) ? "Int" : read;
+                    wire = primitive.equals(TypeName.FLOAT) ? "FIXED32"
+                            : primitive.equals(TypeName.DOUBLE) ? "FIXED64" : "VARINT";
+                }
+        }
+        this.writeMethod = method;
+        this.readMethod = read;
+        this.wireType = wire;
+    }
+
+    /**
+     * the ids of fields in order,derived from the hash of names and types,so that they never depend on the declared order,
+     * the wire types of many types are the same,such as LEN of String and List&lt;String&gt;,so the type is a part of id
+     * @throws IllegalArgumentException if the ids of two fields collide,one of them should be renamed
+     */
+    static int[] createIds(List<FieldData> fields) {
+        int[] ids = new int[fields.size()];
+        Map<Integer, String> used = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            FieldData data = fields.get(i);
+            String name = data.getName();
+            int hash = (name + ':' + data.getFieldType() + ':' + data.getType()).hashCode();
+            ids[i] = (hash ^ (hash >>> 16)) & ID_MASK;
+            String old = used.put(ids[i], name);
+            if (old != null) {
+                throw new IllegalArgumentException(String.format(
+                        "the binary ids of field %s and %s collide,rename one of them", old, name));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * hash of names and types of fields,it changes when a field is added,removed or changed
+     */
+    static int schemaHash(List<FieldData> fields) {
+        StringBuilder schema = new StringBuilder();
+        for (FieldData data : fields) {
+            schema.append(data.getName()).append(':')
+                    .append(data.getFieldType()).append(':')
+                    .append(data.getType()).append(';');
+        }
+        return schema.toString().hashCode();
+    }
+
+    /**
+     * the name of id constant in RequestData
+     */
+    static String idName(FieldData data) {
+        return "ID_" + data.getName();
+    }
+
+    /**
+     * the field is read by an unchecked cast
+     */
+    boolean isUnchecked() {
+        return writeMethod == null && fieldType instanceof ParameterizedTypeName;
+    }
+
+    /**
+     * the statement to write field of this object,the value is read by getter
+     */
+    CodeBlock write(String writer) {
+        String id = idName(data);
+        String getter = StringUtils.getGetMethodName(data.getName()) + "()";
+        if (writeMethod == null) {
+            return CodeBlock.builder().addStatement("$L.writeSerializable($L, $L)", writer, id, getter).build();
+        }
+        if (!data.getType().isBoxedPrimitive() || data.getFieldType() != FieldType.Serializable) {
+            return CodeBlock.builder().addStatement("$L.write$L($L, $L)", writer, writeMethod, id, getter).build();
+        }
+        return CodeBlock.builder()
+                .beginControlFlow("if ($L == null)", getter)
+                .addStatement("$L.writeNull($L)", writer, id)
+                .nextControlFlow("else")
+                .addStatement("$L.write$L($L, $L)", writer, writeMethod, id, getter)
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * the cases of switch on tag to read field into target,a reference field has another case for NULL
+     */
+    CodeBlock read(String reader, String target) {
+        String id = idName(data);
+        String name = data.getName();
+        CodeBlock.Builder builder = CodeBlock.builder()
+                .add("case $L << 3 | $T.$L:\n", id, WRITER, wireType)
+                .indent();
+        if (writeMethod == null) {
+            builder.addStatement("$L.$L = ($T) $L.readSerializable()", target, name, fieldType, reader);
+        } else {
+            builder.addStatement("$L.$L = $L.read$L()", target, name, reader, readMethod);
+        }
+        builder.addStatement("break").unindent();
+        if (!fieldType.isPrimitive()) {
+            builder.add("case $L << 3 | $T.NULL:\n", id, WRITER)
+                    .indent()
+                    .addStatement("$L.$L = null", target, name)
+                    .addStatement("break")
+                    .unindent();
+        }
+        return builder.build();
+    }
+
+    /**
+     * Int for int,Boolean for boolean,String for String etc.
+     */
+    private static String simpleName(TypeName type) {
+        if (type.equals(TypeNames.STRING)) {
+            return "String";
+        }
+        String name = type.toString();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,186 @@
+package com.lzh.processor.compiler;
+
+import com.squareup.javapoet.JavaFile;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generate java files for the parsed elements in three steps:
+ * <ol>
+ * <li>create the {@link FileFactory} on javac thread,all of the Elements/Types calls are done here</li>
+ * <li>build and render the java files on a fork-join pool,the factories only work on snapshot values</li>
+ * <li>write the rendered files by {@link Filer} on javac thread one by one</li>
+ * </ol>
+ * The second step is skipped for the files whose fingerprint is found in {@link OutputCache}.
+ */
+class CodeGenerator {
+
+    /**
+     * render on current thread when there are less factories than this,the pool is not worth it
+     */
+    private static final int PARALLEL_THRESHOLD = 8;
+
+    private ForkJoinPool pool;
+
+    /**
+     * cache of rendered files between builds,null if it is not enabled by option
+     */
+    private OutputCache cache;
+
+    void setCache(OutputCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * build and render all of the factories,the result is in the same order as factories
+     */
+    List<Output> render(List<FileFactory> factories) {
+        List<Output> outputs = new ArrayList<>(factories.size());
+        if (factories.size() < PARALLEL_THRESHOLD) {
+            for (FileFactory factory : factories) {
+                outputs.add(new RenderTask(factory, cache).call());
+            }
+            return outputs;
+        }
+
+        if (pool == null) {
+            pool = new ForkJoinPool();
+        }
+        List<RenderTask> tasks = new ArrayList<>(factories.size());
+        for (FileFactory factory : factories) {
+            tasks.add(new RenderTask(factory, cache));
+        }
+        List<Future<Output>> futures = pool.invokeAll(tasks);
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                outputs.add(futures.get(i).get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                outputs.add(new Output(factories.get(i).parser.getElement(), e));
+            } catch (ExecutionException e) {
+                outputs.add(new Output(factories.get(i).parser.getElement(), e.getCause()));
+            }
+        }
+        return outputs;
+    }
+
+    /**
+     * write the rendered file,must be called on javac thread
+     */
+    void write(Output output, Filer filer, ProcessorStats stats) throws IOException {
+        long start = System.nanoTime();
+        JavaFileObject file = filer.createSourceFile(output.qualifiedName, output.element);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(output.content);
+        } finally {
+            writer.close();
+        }
+        stats.writeNanos += System.nanoTime() - start;
+        stats.addFile(output.content);
+    }
+
+    void shutdown() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    private static class RenderTask implements Callable<Output> {
+        private final FileFactory factory;
+        private final OutputCache cache;
+
+        RenderTask(FileFactory factory, OutputCache cache) {
+            this.factory = factory;
+            this.cache = cache;
+        }
+
+        @Override
+        public Output call() {
+            TypeElement element = factory.parser.getElement();
+            try {
+                String qualifiedName = factory.generateClassName.toString();
+                String fingerprint = null;
+                if (cache != null) {
+                    fingerprint = factory.fingerprint();
+                    String content = cache.get(qualifiedName, fingerprint);
+                    if (content != null) {
+                        return new Output(element, qualifiedName, content, true);
+                    }
+                }
+                long start = System.nanoTime();
+                JavaFile javaFile = factory.generateCode();
+                long built = System.nanoTime();
+                String content = javaFile.toString();
+                long rendered = System.nanoTime();
+                if (cache != null) {
+                    cache.put(qualifiedName, fingerprint, content);
+                }
+                return new Output(element, qualifiedName, content, built - start, rendered - built);
+            } catch (Throwable e) {
+                return new Output(element, e);
+            }
+        }
+    }
+
+    /**
+     * the rendered java file of an element,or the error when generate it
+     */
+    static class Output {
+        final TypeElement element;
+        final String qualifiedName;
+        final String content;
+        final Throwable error;
+        /**
+         * the time of FileFactory.generateCode and JavaFile.toString on the rendering thread
+         */
+        final long buildNanos;
+        final long renderNanos;
+        /**
+         * the content is read from {@link OutputCache}
+         */
+        final boolean cached;
+
+        Output(TypeElement element, String qualifiedName, String content, long buildNanos, long renderNanos) {
+            this.element = element;
+            this.qualifiedName = qualifiedName;
+            this.content = content;
+            this.error = null;
+            this.buildNanos = buildNanos;
+            this.renderNanos = renderNanos;
+            this.cached = false;
+        }
+
+        Output(TypeElement element, String qualifiedName, String content, boolean cached) {
+            this.element = element;
+            this.qualifiedName = qualifiedName;
+            this.content = content;
+            this.error = null;
+            this.buildNanos = 0;
+            this.renderNanos = 0;
+            this.cached = cached;
+        }
+
+        Output(TypeElement element, Throwable error) {
+            this.element = element;
+            this.qualifiedName = null;
+            this.content = null;
+            this.error = error;
+            this.buildNanos = 0;
+            this.renderNanos = 0;
+            this.cached = false;
+        }
+    }
+}
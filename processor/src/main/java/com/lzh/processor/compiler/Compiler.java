@@ -1,9 +1,15 @@
 package com.lzh.processor.compiler;
 
 import com.lzh.processor.annoapi.Params;
-import com.lzh.processor.util.UtilMgr;
+import com.lzh.processor.util.ProcessorContext;
+import com.squareup.javapoet.JavaFile;
 
+import java.io.File;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 import javax.annotation.processing.AbstractProcessor;
@@ -12,11 +18,61 @@ import javax.annotation.processing.RoundEnvironment;
 import javax.lang.model.SourceVersion;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
 import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
 
 public class Compiler extends AbstractProcessor {
 
-    private boolean isFirst;
+    private static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
+    private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
+
+    /**
+     * qualified names of classes whose parent class can not be resolved yet,retry them in next round
+     */
+    private Set<String> deferred = new LinkedHashSet<>();
+
+    /**
+     * qualified names of classes that has been generated in previous rounds
+     */
+    private Set<String> generated = new HashSet<>();
+
+    private CodeGenerator generator = new CodeGenerator();
+
+    private ProcessorStats stats = new ProcessorStats();
+
+    /**
+     * the tools of processing environment of this processor instance,created in init
+     */
+    private ProcessorContext context;
+
+    private FieldValidator validator;
+
+    private boolean statsEnabled;
+
+    private boolean cacheEnabled;
+
+    /**
+     * generator of the registry of this module,null if it is not enabled by option
+     */
+    private RegistryGenerator registry;
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        Set<String> set = new HashSet<>();
+        set.add(ProcessorStats.OPTION);
+        set.add(OutputCache.OPTION);
+        set.add(ElementParser.FORMAT_OPTION);
+        set.add(ElementParser.SIZE_GUARD_OPTION);
+        set.add(RegistryGenerator.MODULE_OPTION);
+        set.add(RegistryGenerator.DEPENDENCIES_OPTION);
+        // gradle incremental processing type,the registry and the stats file aggregate all of the annotated classes
+        set.add(registry == null && !statsEnabled ? GRADLE_ISOLATING : GRADLE_AGGREGATING);
+        return set;
+    }
 
     @Override
     public Set<String> getSupportedAnnotationTypes() {
@@ -33,33 +89,201 @@ public class Compiler extends AbstractProcessor {
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
-        UtilMgr mgr = UtilMgr.getMgr();
-        mgr.setElementUtils(processingEnv.getElementUtils());
-        mgr.setFiler(processingEnv.getFiler());
-        mgr.setMessager(processingEnv.getMessager());
-        mgr.setTypeUtils(processingEnv.getTypeUtils());
+        context = new ProcessorContext(processingEnv);
+        validator = new FieldValidator(context);
+        statsEnabled = Boolean.parseBoolean(processingEnv.getOptions().get(ProcessorStats.OPTION));
+        String cacheDir = processingEnv.getOptions().get(OutputCache.OPTION);
+        if (cacheDir != null && !cacheDir.isEmpty()) {
+            cacheEnabled = true;
+            generator.setCache(new OutputCache(new File(cacheDir)));
+        }
+        String module = processingEnv.getOptions().get(RegistryGenerator.MODULE_OPTION);
+        if (module != null && !module.isEmpty()) {
+            registry = new RegistryGenerator(module,
+                    processingEnv.getOptions().get(RegistryGenerator.DEPENDENCIES_OPTION));
+        }
     }
 
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
-        if (isFirst) {
+        long start = System.nanoTime();
+        try {
+            return processRound(roundEnv);
+        } finally {
+            stats.rounds++;
+            stats.totalNanos += System.nanoTime() - start;
+            if (roundEnv.processingOver() && statsEnabled) {
+                writeStats();
+            } else if (roundEnv.processingOver() && cacheEnabled) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, stats.cacheSummary());
+            }
+        }
+    }
+
+    private boolean processRound(RoundEnvironment roundEnv) {
+        long start = System.nanoTime();
+        List<TypeElement> queue = collectElements(roundEnv);
+        stats.discoveryNanos += System.nanoTime() - start;
+        if (roundEnv.processingOver()) {
+            // nothing could be generated in last round,the remaining elements will never be resolvable
+            for (TypeElement ele : queue) {
+                error(ele, "processor tool generate java files failed: %s,the parent class could not be resolved", ele);
+            }
+            generator.shutdown();
             return false;
         }
-        isFirst = true;
-        Set<? extends Element> elements = roundEnv.getElementsAnnotatedWith(Params.class);
-        for (Element ele : elements) {
+        boolean newElements = !roundEnv.getElementsAnnotatedWith(Params.class).isEmpty();
+        int generatedBefore = generated.size();
+
+        // parse elements on javac thread
+        HierarchyCache cache = new HierarchyCache(context, stats);
+        List<FileFactory> factories = new ArrayList<>();
+        for (TypeElement ele : queue) {
+            long parseStart = System.nanoTime();
+            if (hasErrorParent(ele)) {
+                // parent class may be generated by other processor in this round
+                deferred.add(ele.getQualifiedName().toString());
+                stats.discoveryNanos += System.nanoTime() - parseStart;
+                continue;
+            }
+            stats.discoveryNanos += System.nanoTime() - parseStart;
+            parseStart = System.nanoTime();
             try {
-                ElementParser parser = ElementParser.createParser((TypeElement) ele);
-                parser.generateCode();
+                // report every invalid field of all elements,instead of stopping at the first one
+                if (!validator.validate(ele, cache.resolve(ele))) {
+                    continue;
+                }
+                ElementParser parser = ElementParser.createParser(ele, context, cache);
+                factories.add(parser.createFactory());
+                stats.elements++;
+                stats.fields += parser.getFieldList().size();
             }catch (Throwable e) {
                 error(ele, "processor tool generate java files failed: %s,%s", ele, e.getMessage());
-                return true;
+            } finally {
+                stats.parseNanos += System.nanoTime() - parseStart;
             }
         }
 
+        // build java files in parallel,then write them serially
+        List<CodeGenerator.Output> outputs = generator.render(factories);
+        for (int i = 0; i < outputs.size(); i++) {
+            CodeGenerator.Output output = outputs.get(i);
+            TypeElement ele = output.element;
+            stats.buildNanos += output.buildNanos;
+            stats.renderNanos += output.renderNanos;
+            if (output.cached) {
+                stats.cacheHits++;
+            } else if (cacheEnabled && output.error == null) {
+                stats.cacheMisses++;
+            }
+            try {
+                if (output.error != null) {
+                    throw output.error;
+                }
+                generator.write(output, processingEnv.getFiler(), stats);
+                generated.add(ele.getQualifiedName().toString());
+                register(factories.get(i));
+            }catch (Throwable e) {
+                error(ele, "processor tool generate java files failed: %s,%s", ele, e.getMessage());
+            }
+        }
+
+        if (registry != null && !registry.isWritten() && !newElements && generated.size() == generatedBefore) {
+            // the first round that has no new class to register,it is not the last round,
+            // so the registry is compiled as a normal source instead of being created in the last round
+            writeRegistry();
+        }
         return false;
     }
 
+    private void register(FileFactory factory) {
+        if (registry == null) {
+            return;
+        }
+        TypeElement ele = factory.parser.getElement();
+        if (registry.isWritten()) {
+            // the class is generated from the sources of other processor after a round without new classes
+            error(ele, "processor tool register %s failed: it is left out of registry %s,which is generated before it",
+                    ele, registry.getQualifiedName());
+            return;
+        }
+        registry.add(ele, processingEnv.getElementUtils().getBinaryName(ele).toString(),
+                factory.generateClassName, factory.parser.getRoute(), factory.isAbstract);
+    }
+
+    private void writeRegistry() {
+        registry.setWritten();
+        try {
+            long start = System.nanoTime();
+            JavaFile javaFile = registry.generate(processingEnv.getElementUtils());
+            long built = System.nanoTime();
+            // rendered and written by JavaFile,so the render time is counted as write
+            javaFile.writeTo(processingEnv.getFiler());
+            stats.buildNanos += built - start;
+            stats.writeNanos += System.nanoTime() - built;
+            if (statsEnabled) {
+                stats.addFile(javaFile.toString());
+            }
+        } catch (Throwable e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    String.format("processor tool generate registry failed: %s,%s", registry.getQualifiedName(), e.getMessage()));
+        }
+    }
+
+    /**
+     * report the stats by a NOTE and the json file in generated source directory
+     */
+    private void writeStats() {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, stats.summary());
+        try {
+            FileObject file = processingEnv.getFiler().createResource(StandardLocation.SOURCE_OUTPUT, "",
+                    ProcessorStats.FILE_NAME);
+            Writer writer = file.openWriter();
+            try {
+                writer.write(stats.toJson());
+            } finally {
+                writer.close();
+            }
+        } catch (Throwable e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    String.format("processor tool write stats failed: %s", e.getMessage()));
+        }
+    }
+
+    /**
+     * collect the deferred elements of previous round and the new elements of this round
+     */
+    private List<TypeElement> collectElements(RoundEnvironment roundEnv) {
+        Elements elementUtils = processingEnv.getElementUtils();
+        Set<String> names = new LinkedHashSet<>(deferred);
+        deferred.clear();
+        for (Element ele : roundEnv.getElementsAnnotatedWith(Params.class)) {
+            names.add(((TypeElement) ele).getQualifiedName().toString());
+        }
+
+        List<TypeElement> queue = new ArrayList<>();
+        for (String name : names) {
+            // element instances should not be shared between rounds,look them up again by name
+            TypeElement element = elementUtils.getTypeElement(name);
+            if (element != null && !generated.contains(name)) {
+                queue.add(element);
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * check out if any class in the parent chain is not resolvable yet
+     */
+    private boolean hasErrorParent(TypeElement element) {
+        TypeMirror superTM = element.getSuperclass();
+        while (superTM.getKind() == TypeKind.DECLARED) {
+            TypeElement parent = (TypeElement) processingEnv.getTypeUtils().asElement(superTM);
+            superTM = parent.getSuperclass();
+        }
+        return superTM.getKind() == TypeKind.ERROR;
+    }
+
     private void error(Element element, String message, Object... args) {
         if (args.length > 0) {
             message = String.format(message, args);
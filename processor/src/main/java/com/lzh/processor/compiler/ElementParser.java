@@ -1,12 +1,13 @@
 package com.lzh.processor.compiler;
 
+import com.lzh.processor.annoapi.DataFormat;
 import com.lzh.processor.annoapi.Field;
 import com.lzh.processor.annoapi.Params;
 import com.lzh.processor.data.FieldData;
-import com.lzh.processor.util.UtilMgr;
+import com.lzh.processor.util.ProcessorContext;
 import com.squareup.javapoet.TypeName;
 
-import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -14,16 +15,27 @@ import java.util.Set;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.MirroredTypeException;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
 
 /**
  * @author Administrator
  */
 public class ElementParser {
 
-    private static final String ACT_NAME = "android.app.Activity";
-    private static final String FRAG_NAME = "android.app.Fragment";
-    private static final String V4_FRAG_NAME = "android.support.v4.app.Fragment";
+    static final String ACT_NAME = "android.app.Activity";
+    static final String FRAG_NAME = "android.app.Fragment";
+    static final String V4_FRAG_NAME = "android.support.v4.app.Fragment";
+    static final String PARCELABLE_NAME = "android.os.Parcelable";
+    /**
+     * processor option of the default {@link DataFormat},used by @Params(format = auto)
+     */
+    static final String FORMAT_OPTION = "processortools.format";
+    /**
+     * processor option to estimate the payload size by PayloadGuard in createIntent/createBundle
+     */
+    static final String SIZE_GUARD_OPTION = "processortools.sizeGuard";
     /**
      * class name use @Params
      */
@@ -42,10 +54,21 @@ public class ElementParser {
      */
     private List<FieldData> parentFieldList;
     private TypeElement parentElement;
+    /**
+     * the way to pass RequestData,never be auto
+     */
+    private DataFormat format;
+    /**
+     * the route key of @Params,empty if not defined
+     */
+    private String route;
+    private boolean sizeGuard;
+    private boolean reusable;
     /**
      * use @Params annotation class
      */
     private TypeElement element;
+    private ProcessorContext context;
 
     public String getClzName() {
         return clzName;
@@ -67,67 +90,83 @@ public class ElementParser {
         return element;
     }
 
-    public static ElementParser createParser(TypeElement element) {
+    public DataFormat getFormat() {
+        return format;
+    }
+
+    public String getRoute() {
+        return route;
+    }
+
+    public boolean isSizeGuard() {
+        return sizeGuard;
+    }
+
+    public boolean isReusable() {
+        return reusable;
+    }
+
+    public ProcessorContext getContext() {
+        return context;
+    }
+
+    public static ElementParser createParser(TypeElement element, ProcessorContext context, HierarchyCache cache) {
         ElementParser parser = new ElementParser();
         parser.element = element;
-        parser.parse();
+        parser.context = context;
+        parser.parse(cache);
         return parser;
     }
 
-    void parse() {
-        checkIsCorrectClass();
+    void parse(HierarchyCache cache) {
+        HierarchyCache.Node node = cache.resolve(element);
+        checkIsCorrectClass(node);
         clzName = element.getSimpleName().toString();
-        fieldList = parseField(element);
-        parentFieldList = parseParentField();
-        checkIsDuplicate(fieldList, parentFieldList);
-    }
-
-    private void checkIsDuplicate(List<FieldData> fieldList, List<FieldData> parentFieldList) {
-        for (FieldData parentData : parentFieldList) {
-            for (FieldData subData : fieldList) {
-                if (subData.getName().equals(parentData.getName())) {
-                    throw new IllegalArgumentException(
-                            String.format("The field %s was defined in parent class",subData.getName())
-                    );
-                }
-            }
+        fieldList = node.fields;
+        parentFieldList = node.parentFields;
+        parentElement = node.paramsParent;
+        format = parseFormat(element, context);
+        route = element.getAnnotation(Params.class).route();
+        reusable = element.getAnnotation(Params.class).reusable();
+        sizeGuard = Boolean.parseBoolean(context.getOptions().get(SIZE_GUARD_OPTION));
+    }
+
+    /**
+     * get the format of @Params,or the format of processor option if it is auto
+     */
+    static DataFormat parseFormat(TypeElement element, ProcessorContext context) {
+        DataFormat format = element.getAnnotation(Params.class).format();
+        if (format != DataFormat.auto) {
+            return format;
+        }
+
+        String option = context.getOptions().get(FORMAT_OPTION);
+        if (option == null || option.isEmpty()) {
+            return DataFormat.serializable;
         }
+        try {
+            format = DataFormat.valueOf(option);
+        } catch (IllegalArgumentException e) {
+            format = DataFormat.auto;
+        }
+        if (format == DataFormat.auto) {
+            throw new IllegalArgumentException(String.format("unknown value of option %s: %s",FORMAT_OPTION,option));
+        }
+        return format;
     }
 
     /**
      * check out if is extends from Activity or fragment
      */
-    private void checkIsCorrectClass() {
-        if (checkIsSubClass(ACT_NAME)) {
-            type = ElementType.ACTTIVITY;
-        } else if (checkIsSubClass(FRAG_NAME) || checkIsSubClass(V4_FRAG_NAME)) {
-            type = ElementType.FRAGMENT;
-        } else {
+    private void checkIsCorrectClass(HierarchyCache.Node node) {
+        if (node.type == null) {
             throw new IllegalArgumentException(String.format("class %s must be extends from %s or %s or %s",
                     element.getQualifiedName(),ACT_NAME,FRAG_NAME,V4_FRAG_NAME));
         }
+        type = node.type;
     }
 
-    private List<FieldData> parseParentField() {
-        List<FieldData> parentFieldList = new ArrayList<>();
-        TypeMirror superTM = element.getSuperclass();
-        TypeElement curElement;
-        do {
-            curElement = (TypeElement) UtilMgr.getMgr().getTypeUtils().asElement(superTM);
-            if (curElement == null) {
-                return parentFieldList;
-            }
-            List<FieldData> parentList = parseField(curElement);
-            if (parentList.size() > 0 && parentElement == null)  {
-                parentElement = curElement;
-            }
-            parentFieldList.addAll(parentList);
-            superTM = curElement.getSuperclass();
-        }while (superTM != null);
-        return parentFieldList;
-    }
-
-    private List<FieldData> parseField(TypeElement element) {
+    static List<FieldData> parseField(TypeElement element, ProcessorContext context) {
         List<FieldData> fieldList = new ArrayList<>();
         Params annotation = element.getAnnotation(Params.class);
         if (annotation == null) {
@@ -139,52 +178,59 @@ public class ElementParser {
             FieldData data = new FieldData();
             data.setDoc(field.doc());
             data.setName(field.name());
-            data.setType(getClzType(field));
+            TypeMirror mirror = getClzMirror(field);
+            data.setType(mirror == null ? TypeName.get(field.type()) : TypeName.get(mirror));
+            data.setParcelable(mirror != null && isParcelable(mirror, context));
+            data.setSerializable(mirror == null ? field.type().isPrimitive() || Serializable.class.isAssignableFrom(field.type())
+                    : isSerializable(mirror, context));
             data.setFieldType(field.fieldType());
             data.setDefValue(field.defValue());
+            data.setTransport(field.transport());
             fieldList.add(data);
         }
         return fieldList;
     }
 
-    private TypeName getClzType (Field field) {
-        TypeName typeName;
+    /**
+     * get the type mirror of field type,null if the class is already loaded by processor
+     */
+    private static TypeMirror getClzMirror (Field field) {
         try {
-            Class<?> clazz = field.type();
-            typeName = TypeName.get(clazz);
+            field.type();
+            return null;
         } catch (MirroredTypeException mte) {
-            typeName = TypeName.get(mte.getTypeMirror());
+            return mte.getTypeMirror();
         }
-        return typeName;
     }
 
-    /**
-     * check out if is target's subclass
-     */
-    private boolean checkIsSubClass(String target) {
-        TypeElement type = element;
-        while (true) {
-            if (type == null) {
-                return false;
-            } else if (target.equals(type.getQualifiedName().toString())) {
-                return true;
-            }
-            type = getParentClass(type);
+    private static boolean isParcelable(TypeMirror mirror, ProcessorContext context) {
+        TypeElement parcelable = context.getElementUtils().getTypeElement(PARCELABLE_NAME);
+        if (parcelable == null || mirror.getKind() != TypeKind.DECLARED) {
+            return false;
         }
+        Types types = context.getTypeUtils();
+        return types.isAssignable(types.erasure(mirror), parcelable.asType());
     }
 
-    TypeElement getParentClass (TypeElement child) {
-        return (TypeElement) UtilMgr.getMgr().getTypeUtils().asElement(child.getSuperclass());
+    private static boolean isSerializable(TypeMirror mirror, ProcessorContext context) {
+        if (mirror.getKind().isPrimitive()) {
+            return true;
+        }
+        TypeElement serializable = context.getElementUtils().getTypeElement(Serializable.class.getCanonicalName());
+        Types types = context.getTypeUtils();
+        return serializable != null && types.isAssignable(types.erasure(mirror), serializable.asType());
     }
 
-    public void generateCode() throws IOException {
+    /**
+     * create the file factory,must be called on javac thread
+     */
+    public FileFactory createFactory() {
         switch (type) {
             case ACTTIVITY:
-                new ActivityFactory(this).generateCode();
-                break;
+                return new ActivityFactory(this);
             case FRAGMENT:
-                new FragmentFactory(this).generateCode();
-                break;
+            default:
+                return new FragmentFactory(this);
         }
     }
 
@@ -0,0 +1,257 @@
+package com.lzh.processor.compiler;
+
+import com.lzh.processor.annoapi.FieldType;
+import com.lzh.processor.data.FieldData;
+import com.lzh.processor.util.StringUtils;
+import com.lzh.processor.util.TypeNames;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+/**
+ * Create the statements to put a field of RequestData into Intent or Bundle as a typed extra
+ * and read it back,used by {@link com.lzh.processor.annoapi.DataFormat#flat}.
+ * <p>
+ * Primitives,String,arrays of them,String/Integer lists and Parcelable types use the typed methods,
+ * only the other types are put as Serializable.
+ * Every field has its own key {@link #keyName(FieldData)},defined in RequestData as TAG + ".name".
+ */
+class ExtraCodec {
+
+    static final String AS_ARRAY_LIST = "asArrayList";
+    static final ClassName PAYLOAD_GUARD = ClassName.get("com.lzh.processor.runtime", "PayloadGuard");
+    static final ClassName HANDOFF_STORE = ClassName.get("com.lzh.processor.runtime", "HandoffStore");
+
+    private static final ClassName INTEGER = ClassName.get(Integer.class);
+
+    private enum Kind {
+        /**
+         * primitive value,read with the current value as default
+         */
+        PRIMITIVE,
+        /**
+         * a reference type that has typed put/get methods
+         */
+        TYPED,
+        /**
+         * a list put by typed ArrayList methods
+         */
+        ARRAY_LIST,
+        /**
+         * array of Parcelable,it should be copied to the array of component type after read
+         */
+        PARCELABLE_ARRAY,
+        SERIALIZABLE
+    }
+
+    private final Kind kind;
+    /**
+     * the infix of putXxx/getXxx of Bundle,such as Int,StringArray,IntegerArrayList
+     */
+    private final String method;
+    private final FieldData data;
+    private final TypeName fieldType;
+
+    ExtraCodec(FieldData data, TypeName fieldType) {
+        this.data = data;
+        this.fieldType = fieldType;
+        TypeName type = data.getType();
+        switch (data.getFieldType()) {
+            case array:
+                if (type.isPrimitive()) {
+                    kind = Kind.TYPED;
+                    method = primitiveName(type) + "Array";
+                } else if (type.equals(TypeNames.STRING)) {
+                    kind = Kind.TYPED;
+                    method = "StringArray";
+                } else if (data.isParcelable()) {
+                    kind = Kind.PARCELABLE_ARRAY;
+                    method = "ParcelableArray";
+                } else {
+                    kind = Kind.SERIALIZABLE;
+                    method = "Serializable";
+                }
+                break;
+            case list:
+                if (type.equals(TypeNames.STRING)) {
+                    kind = Kind.ARRAY_LIST;
+                    method = "StringArrayList";
+                } else if (type.box().equals(INTEGER)) {
+                    kind = Kind.ARRAY_LIST;
+                    method = "IntegerArrayList";
+                } else if (data.isParcelable()) {
+                    kind = Kind.ARRAY_LIST;
+                    method = "ParcelableArrayList";
+                } else {
+                    kind = Kind.SERIALIZABLE;
+                    method = "Serializable";
+                }
+                break;
+            case set:
+                kind = Kind.SERIALIZABLE;
+                method = "Serializable";
+                break;
+            case Serializable:
+            default:
+                if (type.isPrimitive()) {
+                    kind = Kind.PRIMITIVE;
+                    method = primitiveName(type);
+                } else if (type.equals(TypeNames.STRING)) {
+                    kind = Kind.TYPED;
+                    method = "String";
+                } else if (data.isParcelable()) {
+                    kind = Kind.TYPED;
+                    method = "Parcelable";
+                } else {
+                    kind = Kind.SERIALIZABLE;
+                    method = "Serializable";
+                }
+        }
+    }
+
+    /**
+     * the name of key constant in RequestData
+     */
+    static String keyName(FieldData data) {
+        return "KEY_" + data.getName();
+    }
+
+    /**
+     * the field needs the asArrayList helper of RequestData
+     */
+    boolean needArrayList() {
+        return kind == Kind.ARRAY_LIST || (kind == Kind.SERIALIZABLE && data.getFieldType() == FieldType.list);
+    }
+
+    /**
+     * the statements of {@link #get(String, boolean)} cast to a parameterized type
+     */
+    boolean isUnchecked(boolean spilled) {
+        return fieldType instanceof ParameterizedTypeName && (kind == Kind.SERIALIZABLE || spilled);
+    }
+
+    /**
+     * the statement to put field of this object into a Bundle
+     */
+    CodeBlock putBundle(String bundle) {
+        return CodeBlock.builder()
+                .addStatement("$L.put$L($L, $L)", bundle, method, keyName(data), value())
+                .build();
+    }
+
+    /**
+     * the statement to put field of this object into an Intent
+     */
+    CodeBlock putIntent(String intent) {
+        if (kind == Kind.ARRAY_LIST) {
+            return CodeBlock.builder()
+                    .addStatement("$L.put$LExtra($L, $L)", intent, method, keyName(data), value())
+                    .build();
+        }
+        return CodeBlock.builder()
+                .addStatement("$L.putExtra($L, $L)", intent, keyName(data), value())
+                .build();
+    }
+
+    /**
+     * the field could be moved into HandoffStore by PayloadGuard,primitives are never spilled
+     */
+    boolean isSpillable() {
+        return kind != Kind.PRIMITIVE;
+    }
+
+    /**
+     * the statement to put the token of field of this object in HandoffStore,instead of the value
+     * @param intent the target is an Intent,or a Bundle
+     */
+    CodeBlock putSpilled(String target, boolean intent) {
+        return CodeBlock.builder()
+                .addStatement("$L.$L($L + $T.TOKEN_SUFFIX, $T.getDefault().put($L()))", target,
+                        intent ? "putExtra" : "putString", keyName(data), HANDOFF_STORE, HANDOFF_STORE,
+                        StringUtils.getGetMethodName(data.getName()))
+                .build();
+    }
+
+    /**
+     * the value is read by getter,so that the field not decoded yet is decoded first
+     */
+    private CodeBlock value() {
+        String getter = StringUtils.getGetMethodName(data.getName());
+        if (needArrayList()) {
+            return CodeBlock.builder().add("$L($L())", AS_ARRAY_LIST, getter).build();
+        }
+        if (kind == Kind.SERIALIZABLE) {
+            return CodeBlock.builder().add("($T) $L()", Serializable.class, getter).build();
+        }
+        if (kind == Kind.TYPED && data.isParcelable()) {
+            // a type implements Serializable too makes putExtra ambiguous
+            return CodeBlock.builder().add("($T) $L()", ClassName.bestGuess(ElementParser.PARCELABLE_NAME), getter)
+                    .build();
+        }
+        return CodeBlock.builder().add("$L()", getter).build();
+    }
+
+    /**
+     * the statements to read field of this object from a Bundle,keep the current value if the key is absent
+     * @param spilled read the value from HandoffStore if it is spilled or passed by reference
+     */
+    CodeBlock get(String bundle, boolean spilled) {
+        String name = data.getName();
+        String key = keyName(data);
+        CodeBlock.Builder builder = CodeBlock.builder();
+        switch (kind) {
+            case PRIMITIVE:
+                return builder.addStatement("this.$L = $L.get$L($L, this.$L)", name, bundle, method, key, name).build();
+            case PARCELABLE_ARRAY:
+                TypeName parcelable = ArrayTypeName.of(ClassName.bestGuess(ElementParser.PARCELABLE_NAME));
+                builder.beginControlFlow("if ($L.containsKey($L))", bundle, key)
+                        .addStatement("$T $L = $L.getParcelableArray($L)", parcelable, name, bundle, key)
+                        .addStatement("this.$L = $L == null ? null : $T.copyOf($L, $L.length, $T.class)",
+                                name, name, Arrays.class, name, name, fieldType);
+                break;
+            case SERIALIZABLE:
+                builder.beginControlFlow("if ($L.containsKey($L))", bundle, key)
+                        .addStatement("this.$L = ($T) $L.getSerializable($L)", name, fieldType, bundle, key);
+                break;
+            default:
+                builder.beginControlFlow("if ($L.containsKey($L))", bundle, key)
+                        .addStatement("this.$L = $L.get$L($L)", name, bundle, method, key);
+        }
+        if (spilled) {
+            builder.nextControlFlow("else if ($L.containsKey($L + $T.TOKEN_SUFFIX))", bundle, key, HANDOFF_STORE)
+                    .add(resolveReference(CodeBlock.builder()
+                            .add("$L.getString($L + $T.TOKEN_SUFFIX)", bundle, key, HANDOFF_STORE).build(), true));
+        }
+        return builder.endControlFlow().build();
+    }
+
+    /**
+     * the statements to read the value from HandoffStore by token without removing it,keep the current value if it could not be resolved
+     * @param declare declare the local variable reference,or it is declared before
+     */
+    CodeBlock resolveReference(CodeBlock token, boolean declare) {
+        CodeBlock.Builder builder = CodeBlock.builder();
+        if (declare) {
+            builder.addStatement("$T reference = $T.getDefault().get($L)", Object.class, HANDOFF_STORE, token);
+        } else {
+            builder.addStatement("reference = $T.getDefault().get($L)", HANDOFF_STORE, token);
+        }
+        return builder.beginControlFlow("if (reference != null)")
+                .addStatement("this.$L = ($T) reference", data.getName(), fieldType)
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * Int for int,Boolean for boolean etc.
+     */
+    private static String primitiveName(TypeName type) {
+        String name = type.toString();
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
@@ -0,0 +1,369 @@
+package com.lzh.processor.compiler;
+
+import com.lzh.processor.annoapi.DataFormat;
+import com.lzh.processor.annoapi.FieldType;
+import com.lzh.processor.annoapi.Params;
+import com.lzh.processor.data.FieldData;
+import com.lzh.processor.util.ProcessorContext;
+import com.lzh.processor.util.StringUtils;
+import com.lzh.processor.util.TypeNames;
+import com.squareup.javapoet.TypeName;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+
+/**
+ * Validate the fields of @Params in one pass before any code is generated,every problem is reported by Messager
+ * on the annotation value that causes it,so all of them are shown in one build:
+ * <ul>
+ * <li>the name is not a java identifier</li>
+ * <li>the name is used by a member generated into RequestData,such as extras,KEY_name or SCHEMA_HASH</li>
+ * <li>the name is used twice in the same @Params,or it is defined by a parent class</li>
+ * <li>the defValue is not a literal of the field type</li>
+ * <li>a primitive field is passed by reference</li>
+ * <li>the class is reusable,but its RequestData or that of a parent class is not in flat format</li>
+ * </ul>
+ * The names of the whole parent chain are kept in a hash map,every field is checked once.
+ * A field defined by two parent classes is reported once,on the @Field of the subclass of them.
+ */
+class FieldValidator {
+
+    private static final Pattern CHAR_LITERAL = Pattern.compile("'([^'\\\\\\r\\n]|\\\\([btnfr\"'\\\\]|[0-3]?[0-7]{1,2}|u+[0-9a-fA-F]{4}))'");
+    private static final Pattern FLOAT_LITERAL = Pattern.compile("[+-]?(\\d[\\d_]*\\.?[\\d_]*|\\.\\d[\\d_]*)([eE][+-]?\\d[\\d_]*)?[fFdD]?");
+    private static final BigInteger INT_RANGE = BigInteger.ONE.shiftLeft(32);
+    private static final BigInteger LONG_RANGE = BigInteger.ONE.shiftLeft(64);
+
+    private final ProcessorContext context;
+    /**
+     * the conflicts with parent classes reported,as class#field,shared by all of the rounds,
+     * so that the conflict of a parent class is not reported again by its subclasses
+     */
+    private final Set<String> reportedParents = new HashSet<>();
+
+    FieldValidator(ProcessorContext context) {
+        this.context = context;
+    }
+
+    /**
+     * @param node the resolved hierarchy of element
+     * @return true if no error is reported,or no conflict of parent classes is reported before
+     */
+    boolean validate(TypeElement element, HierarchyCache.Node node) {
+        AnnotationMirror params = findParams(element);
+        List<? extends AnnotationValue> values = params == null ? Collections.<AnnotationValue>emptyList()
+                : getList(params, "fields");
+        boolean valid = true;
+
+        // the class defining every field of parent classes,from the root class down to the direct parent
+        List<HierarchyCache.Node> parents = new ArrayList<>();
+        for (HierarchyCache.Node parent = node.parentNode; parent != null; parent = parent.parentNode) {
+            parents.add(0, parent);
+        }
+        Map<String, String> owners = new HashMap<>();
+        for (HierarchyCache.Node parent : parents) {
+            for (FieldData data : parent.fields) {
+                String owner = owners.get(data.getName());
+                if (owner == null) {
+                    owners.put(data.getName(), parent.name);
+                } else if (!owner.equals(parent.name)) {
+                    // the conflict of parent classes is reported once on the parent class,not on every subclass
+                    valid = false;
+                    reportParentConflict(parent.name, data.getName(), owner);
+                }
+            }
+        }
+
+        Set<String> names = new HashSet<>();
+        List<FieldData> fields = node.fields;
+        Set<String> reserved = reservedNames(fields);
+        // the fields are parsed from the annotation values in order,fall back to the names if they do not match
+        boolean byIndex = values.size() == fields.size();
+        for (int i = 0; i < fields.size(); i++) {
+            FieldData data = fields.get(i);
+            String name = data.getName();
+            AnnotationMirror field = byIndex ? (AnnotationMirror) values.get(i).getValue() : findField(values, name);
+            if (field == null) {
+                field = params;
+            }
+            if (!SourceVersion.isIdentifier(name) || SourceVersion.isKeyword(name)) {
+                valid = false;
+                error(String.format("The field name '%s' is not a valid java identifier", name),
+                        element, field, getValue(field, "name"));
+            } else if (reserved.contains(name)) {
+                valid = false;
+                error(String.format("The field name %s is used by the generated RequestData,rename it", name),
+                        element, field, getValue(field, "name"));
+            } else if (!names.add(name)) {
+                valid = false;
+                error(String.format("The field %s is defined more than once in @Params", name),
+                        element, field, getValue(field, "name"));
+            } else if (owners.containsKey(name)) {
+                valid = false;
+                if (reportedParents.add(element.getQualifiedName() + "#" + name)) {
+                    error(String.format("The field %s was defined in parent class %s", name, owners.get(name)),
+                            element, field, getValue(field, "name"));
+                }
+            }
+
+            String defValueError = checkDefValue(data);
+            if (defValueError != null) {
+                valid = false;
+                error(defValueError, element, field, getValue(field, "defValue"));
+            }
+
+            if (data.isReference() && data.getFieldType() == FieldType.Serializable && data.getType().isPrimitive()) {
+                valid = false;
+                error(String.format("The field %s is primitive,it could not be passed by reference", name),
+                        element, field, getValue(field, "transport"));
+            }
+        }
+
+        Params annotation = element.getAnnotation(Params.class);
+        if (annotation != null && annotation.reusable() && !element.getModifiers().contains(Modifier.ABSTRACT)) {
+            String unflat = findUnflatClass(element, node);
+            if (unflat != null) {
+                valid = false;
+                error(String.format("The RequestData of %s is not in flat format,it is created again by every reuse(),"
+                        + "use DataFormat.flat or remove reusable", unflat), element, params, getValue(params, "reusable"));
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * the class in the chain whose RequestData is created again by reset(),
+     * only the flat RequestData is reset in place,because the other formats are still held by Intent or Bundle
+     * @return the qualified name of the class,null if all of them are flat or have no fields
+     */
+    private String findUnflatClass(TypeElement element, HierarchyCache.Node node) {
+        if (!node.fields.isEmpty() && ElementParser.parseFormat(element, context) != DataFormat.flat) {
+            return element.getQualifiedName().toString();
+        }
+        for (HierarchyCache.Node parent = node.parentNode; parent != null; parent = parent.parentNode) {
+            if (parent.fields.isEmpty()) {
+                continue;
+            }
+            TypeElement parentElement = context.getElementUtils().getTypeElement(parent.name);
+            if (parentElement != null && ElementParser.parseFormat(parentElement, context) != DataFormat.flat) {
+                return parent.name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the names of members generated into RequestData besides the fields,in any format,
+     * so that a field never breaks the generated code when the format is changed
+     */
+    static Set<String> reservedNames(List<FieldData> fields) {
+        Set<String> reserved = new HashSet<>();
+        // the outer class,its TAG is read by the keys of RequestData
+        reserved.add(FileFactory.TAG_FIELD);
+        reserved.add(FileFactory.EXTRAS_FIELD);
+        reserved.add(FileFactory.SCHEMA_HASH_FIELD);
+        reserved.add(FileFactory.CREATOR_FIELD);
+        for (int i = 0; i < fields.size(); i++) {
+            FieldData data = fields.get(i);
+            reserved.add(ExtraCodec.keyName(data));
+            reserved.add(BinaryCodec.idName(data));
+            reserved.add(FileFactory.decodedFlag(i));
+        }
+        return reserved;
+    }
+
+    /**
+     * the defValue is put into generated code as it is,except that of String,
+     * so it should be a literal of the field type
+     * @return the error message,or null if it is valid
+     */
+    static String checkDefValue(FieldData data) {
+        String value = data.getDefValue();
+        if (StringUtils.isEmpty(value)) {
+            return null;
+        }
+        if (data.getFieldType() != FieldType.Serializable) {
+            return String.format("The defValue of field %s is not supported by %s", data.getName(), data.getFieldType());
+        }
+        TypeName type = data.getType();
+        if (type.equals(TypeNames.STRING) || !type.isPrimitive()) {
+            // String is quoted by generator,other objects are written as expressions
+            return null;
+        }
+        String literal = value.trim();
+        boolean valid;
+        if (type.equals(TypeName.BOOLEAN)) {
+            valid = "true".equals(literal) || "false".equals(literal);
+        } else if (type.equals(TypeName.CHAR)) {
+            valid = CHAR_LITERAL.matcher(literal).matches() || isInteger(literal, 0, Character.MAX_VALUE);
+        } else if (type.equals(TypeName.BYTE)) {
+            valid = isInteger(literal, Byte.MIN_VALUE, Byte.MAX_VALUE);
+        } else if (type.equals(TypeName.SHORT)) {
+            valid = isInteger(literal, Short.MIN_VALUE, Short.MAX_VALUE);
+        } else if (type.equals(TypeName.INT)) {
+            valid = isInteger(literal, Integer.MIN_VALUE, Integer.MAX_VALUE);
+        } else if (type.equals(TypeName.LONG)) {
+            valid = isInteger(literal, Long.MIN_VALUE, Long.MAX_VALUE);
+        } else if (type.equals(TypeName.FLOAT)) {
+            // a floating literal without f suffix is double
+            valid = isInteger(literal, Long.MIN_VALUE, Long.MAX_VALUE) || (isFloating(literal)
+                    && Character.toLowerCase(literal.charAt(literal.length() - 1)) == 'f');
+        } else {
+            valid = isInteger(literal, Long.MIN_VALUE, Long.MAX_VALUE) || isFloating(literal);
+        }
+        return valid ? null : String.format("The defValue '%s' of field %s is not a literal of %s",
+                value, data.getName(), type);
+    }
+
+    /**
+     * decimal,hex,octal or binary integer literal,the long literal with suffix L is only valid for long range
+     */
+    private static boolean isInteger(String literal, long min, long max) {
+        boolean negative = literal.startsWith("-");
+        String digits = negative || literal.startsWith("+") ? literal.substring(1).trim() : literal;
+        boolean isLong = digits.endsWith("L") || digits.endsWith("l");
+        if (isLong) {
+            if (max != Long.MAX_VALUE) {
+                return false;
+            }
+            digits = digits.substring(0, digits.length() - 1);
+        }
+        if (digits.isEmpty() || digits.startsWith("_") || digits.endsWith("_")) {
+            return false;
+        }
+        digits = digits.replace("_", "");
+        int radix = 10;
+        if (digits.startsWith("0x") || digits.startsWith("0X")) {
+            radix = 16;
+            digits = digits.substring(2);
+        } else if (digits.startsWith("0b") || digits.startsWith("0B")) {
+            radix = 2;
+            digits = digits.substring(2);
+        } else if (digits.length() > 1 && digits.startsWith("0")) {
+            radix = 8;
+            digits = digits.substring(1);
+        }
+        BigInteger number;
+        try {
+            number = new BigInteger(digits, radix);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (number.signum() < 0) {
+            return false;
+        }
+        if (radix != 10) {
+            // hex,octal and binary literals are two's complement of int or long
+            BigInteger range = isLong ? LONG_RANGE : INT_RANGE;
+            if (number.compareTo(range) >= 0) {
+                return false;
+            }
+            number = isLong ? BigInteger.valueOf(number.longValue()) : BigInteger.valueOf(number.intValue());
+        } else if (!isLong && max == Long.MAX_VALUE) {
+            // the literal without suffix L is int even if it is assigned to long
+            min = Integer.MIN_VALUE;
+            max = Integer.MAX_VALUE;
+        }
+        if (negative) {
+            number = number.negate();
+        }
+        return number.compareTo(BigInteger.valueOf(min)) >= 0 && number.compareTo(BigInteger.valueOf(max)) <= 0;
+    }
+
+    private static boolean isFloating(String literal) {
+        return FLOAT_LITERAL.matcher(literal).matches() && !literal.contains("_.") && !literal.contains("._");
+    }
+
+    /**
+     * report that a field of parent class is defined by its own parent class too,on the @Field of the parent class
+     */
+    private void reportParentConflict(String parentName, String name, String owner) {
+        if (!reportedParents.add(parentName + "#" + name)) {
+            return;
+        }
+        TypeElement parent = context.getElementUtils().getTypeElement(parentName);
+        AnnotationMirror params = parent == null ? null : findParams(parent);
+        AnnotationMirror field = params == null ? null : findField(getList(params, "fields"), name);
+        String message = String.format("The field %s was defined in parent class %s", name, owner);
+        if (parent == null) {
+            context.getMessager().printMessage(Diagnostic.Kind.ERROR, message);
+        } else if (field == null) {
+            error(message, parent, params, null);
+        } else {
+            error(message, parent, field, getValue(field, "name"));
+        }
+    }
+
+    /**
+     * the first @Field of the name in values,null if not found
+     */
+    private static AnnotationMirror findField(List<? extends AnnotationValue> values, String name) {
+        for (AnnotationValue value : values) {
+            AnnotationMirror field = (AnnotationMirror) value.getValue();
+            AnnotationValue fieldName = getValue(field, "name");
+            if (fieldName != null && name.equals(fieldName.getValue())) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private AnnotationMirror findParams(TypeElement element) {
+        String name = Params.class.getCanonicalName();
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            TypeElement type = (TypeElement) mirror.getAnnotationType().asElement();
+            if (type.getQualifiedName().contentEquals(name)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * the explicit value of annotation,null if it is default
+     */
+    private static AnnotationValue getValue(AnnotationMirror mirror, String name) {
+        if (mirror == null) {
+            return null;
+        }
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<? extends AnnotationValue> getList(AnnotationMirror mirror, String name) {
+        AnnotationValue value = getValue(mirror, name);
+        if (value == null || !(value.getValue() instanceof List)) {
+            return Collections.emptyList();
+        }
+        return (List<? extends AnnotationValue>) value.getValue();
+    }
+
+    private void error(String message, TypeElement element, AnnotationMirror mirror, AnnotationValue value) {
+        if (mirror == null) {
+            context.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+        } else if (value == null) {
+            context.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element, mirror);
+        } else {
+            context.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element, mirror, value);
+        }
+    }
+}
@@ -1,26 +1,39 @@
 package com.lzh.processor.compiler;
 
+import com.lzh.processor.annoapi.DataFormat;
 import com.lzh.processor.annoapi.FieldType;
 import com.lzh.processor.data.FieldData;
-import com.lzh.processor.reflect.Reflect;
 import com.lzh.processor.util.StringUtils;
-import com.lzh.processor.util.UtilMgr;
+import com.lzh.processor.util.TypeNames;
+import com.squareup.javapoet.AnnotationSpec;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.ParameterizedTypeName;
 import com.squareup.javapoet.FieldSpec;
 import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.TypeVariableName;
 
 import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
 
 /**
+ * All of the Elements/Types calls should be done in constructor,it runs on javac thread.
+ * {@link #generateCode()} only works on the snapshot values,so that it could run on any thread.
  * @author Administrator
  */
 public abstract class FileFactory {
@@ -29,35 +42,97 @@ public abstract class FileFactory {
     final static String PARENT_CLASS_FIELD_NAME = "parent";
     final static String TAG_FIELD = "TAG";
     final static String CREATE_METHOD = "create";
+    final static String WRITE_METHOD = "writeTo";
+    final static String READ_METHOD = "readFrom";
+    final static String EXTRAS_FIELD = "extras";
+    final static String DATA_CACHE_FIELD = "DATA_CACHE";
+    final static String SCHEMA_HASH_FIELD = "SCHEMA_HASH";
+    final static String CREATOR_FIELD = "CREATOR";
+    final static String TO_BYTES_METHOD = "toBytes";
+    final static String FROM_BYTES_METHOD = "fromBytes";
+    final static String MEASURE_METHOD = "measure";
+    final static String METER_NAME = "meter";
+    final static String PUT_REFERENCES_METHOD = "putReferences";
+    final static String RESOLVE_REFERENCES_METHOD = "resolveReferences";
+    final static String RESET_METHOD = "reset";
+    final static String REUSE_METHOD = "reuse";
+    final static String RECYCLE_METHOD = "recycle";
+    final static String CHECK_GENERATION_METHOD = "checkGeneration";
+    final static String POOL_FIELD = "POOL";
+    final static String GENERATION_FIELD = "generation";
+    final static String SLOT_FIELD = "slot";
+    final static String HANDLE_FIELD = "handle";
+    /**
+     * for the generated methods that cast to parameterized types
+     */
+    final static AnnotationSpec UNCHECKED = AnnotationSpec.builder(SuppressWarnings.class)
+            .addMember("value", "$S", "unchecked").build();
 
     String pkgName;
     ElementParser parser;
-    TypeName generateClassName = null;
-    TypeName generateParentClassName = null;
+    TypeNames typeNames;
+    ClassName generateClassName = null;
+    ClassName generateParentClassName = null;
+    /**
+     * type name of inner class RequestData
+     */
+    ClassName requestDataClassName = null;
+    /**
+     * type name of the class use @Params
+     */
+    TypeName targetClassName = null;
     boolean isEmptyParams = true;
     boolean isAbstract = true;
+    DataFormat format = DataFormat.serializable;
+    /**
+     * estimate the payload size by PayloadGuard in createIntent/createBundle
+     */
+    boolean sizeGuard = false;
+    /**
+     * any field is passed by reference,see {@link com.lzh.processor.annoapi.Transport#reference}
+     */
+    boolean hasReference = false;
+    /**
+     * generate reuse(),the abstract class is never reused because it could not be started
+     */
+    boolean reusable = false;
 
     public FileFactory(ElementParser parser) {
         this.parser = parser;
+        this.typeNames = parser.getContext().getTypeNames();
         this.isEmptyParams = this.parser.getFieldList().size() == 0;
         this.isAbstract = this.parser.isAbstract();
-        pkgName = getPkgName();
-        generateClassName = getTypeName(parser.getClzName() + getSuffix());
-        if (parser.getParentElement() != null) {
-            generateParentClassName = getTypeName(parser.getParentElement().getQualifiedName().toString() + getSuffix());
+        this.format = this.parser.getFormat();
+        this.sizeGuard = this.parser.isSizeGuard();
+        this.reusable = this.parser.isReusable() && !this.isAbstract;
+        for (FieldData data : this.parser.getFieldList()) {
+            this.hasReference |= data.isReference();
+        }
+        pkgName = getPkgName(parser.getElement());
+        targetClassName = getTypeName(parser.getElement());
+        generateClassName = ClassName.get(pkgName, parser.getClzName() + getSuffix());
+        requestDataClassName = generateClassName.nestedClass(REQUEST_DATA_CLASS);
+        TypeElement parentElement = parser.getParentElement();
+        if (parentElement != null) {
+            // generated class is always a top level class in the same package of parent class
+            generateParentClassName = ClassName.get(getPkgName(parentElement),
+                    parentElement.getSimpleName().toString() + getSuffix());
         }
     }
 
     abstract String getSuffix();
 
-    abstract void generateCode() throws IOException;
+    /**
+     * create the java file of generated class,do not access Elements/Types here
+     */
+    abstract JavaFile generateCode();
 
     TypeName getTypeName(TypeElement element) {
         return TypeName.get(element.asType());
     }
 
     TypeName getTypeName (String clzName) {
-        return Reflect.on(TypeName.class).create(clzName).get();
+        return typeNames.get(clzName);
     }
 
     String getName (String clzSimpleName) {
@@ -65,19 +140,11 @@ public abstract class FileFactory {
     }
 
     TypeName getTypeName(FieldType parent,TypeName child) {
-        if (parent.equals(FieldType.array)) {
-            return getTypeName(child.toString() + "[]");
-        } else if (parent.equals(FieldType.list)) {
-            return getTypeName(List.class.getCanonicalName() + "<" + child.toString() + ">");
-        } else if (parent.equals(FieldType.set)) {
-            return getTypeName(Set.class.getCanonicalName() + "<" + child.toString() + ">");
-        } else {
-            return child;
-        }
+        return typeNames.get(parent, child);
     }
 
-    public String getPkgName() {
-        PackageElement pkgElement = UtilMgr.getMgr().getElementUtils().getPackageOf(parser.getElement());
+    String getPkgName(TypeElement element) {
+        PackageElement pkgElement = parser.getContext().getElementUtils().getPackageOf(element);
         return pkgElement.isUnnamed() ? "":pkgElement.getQualifiedName().toString();
     }
 
@@ -87,20 +154,625 @@ public abstract class FileFactory {
     TypeSpec generateRequestData() {
         TypeSpec.Builder builder = TypeSpec.classBuilder(REQUEST_DATA_CLASS)
                 .addModifiers(Modifier.STATIC, Modifier.PUBLIC)
-                .addJavadoc("inner class RequestData,contains all of the field define by annotation @Field")
-                .addSuperinterface(TypeName.get(Serializable.class));
+                .addJavadoc("inner class RequestData,contains all of the field define by annotation @Field");
         List<FieldData> fieldList = parser.getFieldList();
 
         for (int i = 0; i < fieldList.size(); i++) {
             FieldData data = fieldList.get(i);
             builder.addField(createField(data));
-            builder.addMethod(createSetRequestBuilder(data));
-            builder.addMethod(createGetRequestBuilder(data));
+            if (format == DataFormat.flat) {
+                builder.addMethod(createLazySetRequestBuilder(data, i));
+                builder.addMethod(createLazyGetRequestBuilder(data, i));
+            } else {
+                builder.addMethod(createSetRequestBuilder(data));
+                builder.addMethod(createGetRequestBuilder(data));
+            }
+        }
+
+        if (format == DataFormat.parcelable) {
+            addParcelable(builder);
+        } else {
+            builder.addSuperinterface(TypeName.get(Serializable.class));
+        }
+        if (format == DataFormat.flat) {
+            addFlatExtras(builder);
+        }
+        if (needBinaryCodec()) {
+            addBinaryCodec(builder);
         }
+        if (hasReference) {
+            addReferences(builder);
+        }
+        if (sizeGuard) {
+            builder.addMethod(createMeasureMethod());
+        }
+        builder.addMethod(createResetRequestData());
 
         return builder.build();
     }
 
+    /**
+     * implements android.os.Parcelable,write and read the fields one by one
+     */
+    private void addParcelable(TypeSpec.Builder builder) {
+        ClassName parcel = typeNames.get(ParcelCodec.PARCEL_NAME);
+        ClassName parcelable = typeNames.get(ElementParser.PARCELABLE_NAME);
+        ClassName creator = parcelable.nestedClass("Creator");
+        ParcelCodec codec = new ParcelCodec("in", requestDataClassName);
+        ParcelCodec outCodec = new ParcelCodec("dest", requestDataClassName);
+
+        MethodSpec.Builder read = MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .addParameter(parcel, "in");
+        MethodSpec.Builder write = MethodSpec.methodBuilder("writeToParcel")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(parcel, "dest")
+                .addParameter(TypeName.INT, "flags");
+        boolean unchecked = false;
+        for (FieldData data : parser.getFieldList()) {
+            if (data.isReference()) {
+                continue;
+            }
+            TypeName fieldType = getTypeName(data.getFieldType(), data.getType());
+            read.addCode(codec.read(data, fieldType));
+            write.addCode(outCodec.write(data, fieldType));
+            unchecked |= ParcelCodec.isUnchecked(data);
+        }
+        if (unchecked) {
+            read.addAnnotation(UNCHECKED);
+        }
+
+        TypeSpec creatorImpl = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(ParameterizedTypeName.get(creator, requestDataClassName))
+                .addMethod(MethodSpec.methodBuilder("createFromParcel")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(parcel, "in")
+                        .returns(requestDataClassName)
+                        .addStatement("return new $T(in)", requestDataClassName)
+                        .build())
+                .addMethod(MethodSpec.methodBuilder("newArray")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .addParameter(TypeName.INT, "size")
+                        .returns(ArrayTypeName.of(requestDataClassName))
+                        .addStatement("return new $T[size]", requestDataClassName)
+                        .build())
+                .build();
+
+        builder.addSuperinterface(parcelable)
+                .addField(FieldSpec.builder(ParameterizedTypeName.get(creator, requestDataClassName), CREATOR_FIELD,
+                        Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L", creatorImpl)
+                        .build())
+                .addMethod(MethodSpec.constructorBuilder().addModifiers(Modifier.PUBLIC).build())
+                .addMethod(read.build())
+                .addMethod(MethodSpec.methodBuilder("describeContents")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(TypeName.INT)
+                        .addStatement("return 0")
+                        .build())
+                .addMethod(write.build());
+    }
+
+    /**
+     * put every field as a typed extra by its own key,and read them back
+     */
+    private void addFlatExtras(TypeSpec.Builder builder) {
+        String target = getExtrasTarget();
+        TypeName bundle = getTypeName(FragmentFactory.BUNDLE_NAME);
+        int fieldCount = parser.getFieldList().size();
+        builder.addField(FieldSpec.builder(bundle, EXTRAS_FIELD, Modifier.PRIVATE, Modifier.TRANSIENT)
+                .addJavadoc("the extras to decode fields from,null if it is not read from extras\n")
+                .build());
+        for (int i = 0; i < fieldCount; i += 32) {
+            builder.addField(FieldSpec.builder(TypeName.INT, decodedFlag(i), Modifier.PRIVATE, Modifier.TRANSIENT)
+                    .build());
+        }
+
+        MethodSpec.Builder write = MethodSpec.methodBuilder(WRITE_METHOD)
+                .addJavadoc("put the fields into $L as typed extras\n", target)
+                .addParameter(getTypeName(target), "target");
+        if (sizeGuard) {
+            write.addJavadoc("@param $L the spilled fields are put as tokens of HandoffStore,null if no field is spilled\n",
+                    METER_NAME)
+                    .addParameter(ExtraCodec.PAYLOAD_GUARD.nestedClass("Meter"), METER_NAME);
+        }
+        MethodSpec.Builder read = MethodSpec.methodBuilder(READ_METHOD)
+                .addJavadoc("read the fields from extras lazily,a field is decoded on first access of its getter,\n")
+                .addJavadoc("the absent fields keep their values\n")
+                .addParameter(bundle, EXTRAS_FIELD)
+                .addStatement("this.$L = $L", EXTRAS_FIELD, EXTRAS_FIELD);
+        for (int i = 0; i < fieldCount; i += 32) {
+            read.addStatement("this.$L = 0", decodedFlag(i));
+        }
+        MethodSpec.Builder writeObject = MethodSpec.methodBuilder("writeObject")
+                .addModifiers(Modifier.PRIVATE)
+                .addJavadoc("decode the pending fields before serialized,the extras is not serializable\n")
+                .addParameter(ObjectOutputStream.class, "out")
+                .addException(IOException.class);
+        boolean needArrayList = false;
+        boolean intent = !target.equals(FragmentFactory.BUNDLE_NAME);
+        for (int i = 0; i < fieldCount; i++) {
+            FieldData data = parser.getFieldList().get(i);
+            ExtraCodec codec = new ExtraCodec(data, getTypeName(data.getFieldType(), data.getType()));
+            builder.addField(FieldSpec.builder(TypeName.get(String.class), ExtraCodec.keyName(data),
+                    Modifier.STATIC, Modifier.FINAL)
+                    .initializer("$L + $S", TAG_FIELD, "." + data.getName())
+                    .build());
+            CodeBlock put = intent ? codec.putIntent("target") : codec.putBundle("target");
+            if (data.isReference()) {
+                write.addCode(codec.putSpilled("target", intent));
+            } else if (sizeGuard && codec.isSpillable()) {
+                write.beginControlFlow("if ($L != null && $L.isSpilled($L))", METER_NAME, METER_NAME, i)
+                        .addCode(codec.putSpilled("target", intent))
+                        .nextControlFlow("else")
+                        .addCode(put)
+                        .endControlFlow();
+            } else {
+                write.addCode(put);
+            }
+            writeObject.addStatement("$L()", StringUtils.getGetMethodName(data.getName()));
+            needArrayList |= codec.needArrayList();
+        }
+        writeObject.addStatement("out.defaultWriteObject()");
+        builder.addMethod(write.build()).addMethod(read.build()).addMethod(writeObject.build());
+
+        if (needArrayList) {
+            TypeVariableName t = TypeVariableName.get("T");
+            TypeName arrayList = ParameterizedTypeName.get(ClassName.get(ArrayList.class), t);
+            builder.addMethod(MethodSpec.methodBuilder(ExtraCodec.AS_ARRAY_LIST)
+                    .addAnnotation(UNCHECKED)
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC)
+                    .addTypeVariable(t)
+                    .returns(arrayList)
+                    .addParameter(ParameterizedTypeName.get(ClassName.get(List.class), t), "list")
+                    .beginControlFlow("if (list == null || list instanceof $T)", ArrayList.class)
+                    .addStatement("return ($T) list", arrayList)
+                    .endControlFlow()
+                    .addStatement("return new $T(list)", arrayList)
+                    .build());
+        }
+    }
+
+    /**
+     * encode the fields into compact binary and decode them back,see {@link BinaryCodec}
+     */
+    private void addBinaryCodec(TypeSpec.Builder builder) {
+        List<FieldData> fieldList = parser.getFieldList();
+        int[] ids = BinaryCodec.createIds(fieldList);
+        builder.addField(FieldSpec.builder(TypeName.INT, SCHEMA_HASH_FIELD,
+                Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("hash of names and types of fields,the data written by other version of RequestData\n")
+                .addJavadoc("has a different hash,its fields are still matched by id,which is derived from name and type\n")
+                .addJavadoc("while the data of the same hash must not have unknown fields\n")
+                .initializer("$L", BinaryCodec.schemaHash(fieldList))
+                .build());
+
+        MethodSpec.Builder toBytes = MethodSpec.methodBuilder(TO_BYTES_METHOD)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("encode the fields into compact binary,the fields passed by reference are skipped as transient\n")
+                .returns(byte[].class)
+                .addStatement("$T writer = new $T()", BinaryCodec.WRITER, BinaryCodec.WRITER)
+                .addStatement("writer.writeHeader($L)", SCHEMA_HASH_FIELD);
+        MethodSpec.Builder fromBytes = MethodSpec.methodBuilder(FROM_BYTES_METHOD)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("decode the RequestData from the binary of {@link #$L()},\n", TO_BYTES_METHOD)
+                .addJavadoc("the unknown fields of other version are skipped and the absent fields keep default values\n")
+                .addJavadoc("@throws IllegalArgumentException if the data of the same $L has an unknown field\n",
+                        SCHEMA_HASH_FIELD)
+                .returns(requestDataClassName)
+                .addParameter(byte[].class, "bytes")
+                .addStatement("$T data = new $T()", requestDataClassName, requestDataClassName)
+                .addStatement("$T reader = new $T(bytes)", BinaryCodec.READER, BinaryCodec.READER)
+                .addStatement("boolean sameSchema = reader.readHeader() == $L", SCHEMA_HASH_FIELD)
+                .beginControlFlow("while (reader.next())")
+                .beginControlFlow("switch (reader.tag())");
+        boolean unchecked = false;
+        for (int i = 0; i < fieldList.size(); i++) {
+            FieldData data = fieldList.get(i);
+            if (data.isReference()) {
+                continue;
+            }
+            BinaryCodec codec = new BinaryCodec(data, getTypeName(data.getFieldType(), data.getType()));
+            builder.addField(FieldSpec.builder(TypeName.INT, BinaryCodec.idName(data),
+                    Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer("0x$L", Integer.toHexString(ids[i]))
+                    .build());
+            toBytes.addCode(codec.write("writer"));
+            fromBytes.addCode(codec.read("reader", "data"));
+            unchecked |= codec.isUnchecked();
+        }
+        fromBytes.addCode("default:\n").addCode(CodeBlock.builder().indent()
+                .beginControlFlow("if (sameSchema)")
+                .addStatement("throw new $T($S + reader.tag())", IllegalArgumentException.class,
+                        "corrupted data,unknown tag ")
+                .endControlFlow()
+                .addStatement("reader.skip()").unindent().build())
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return data");
+        if (unchecked) {
+            fromBytes.addAnnotation(UNCHECKED);
+        }
+        builder.addMethod(toBytes.addStatement("return writer.toByteArray()").build())
+                .addMethod(fromBytes.build());
+    }
+
+    /**
+     * pass the fields by tokens of HandoffStore,the RequestData is put as a whole or as bytes without these fields,
+     * the flat format uses them only for the bytes
+     */
+    private void addReferences(TypeSpec.Builder builder) {
+        String target = getExtrasTarget();
+        boolean intent = !target.equals(FragmentFactory.BUNDLE_NAME);
+        MethodSpec.Builder put = MethodSpec.methodBuilder(PUT_REFERENCES_METHOD)
+                .addJavadoc("put the fields passed by reference into $L as tokens\n", target)
+                .addParameter(getTypeName(target), "target");
+        MethodSpec.Builder resolve = MethodSpec.methodBuilder(RESOLVE_REFERENCES_METHOD)
+                .addJavadoc("read the fields passed by reference,keep the default value if the token could not be resolved\n")
+                .addParameter(getTypeName(target), "source")
+                .addStatement("$T reference", Object.class);
+        boolean unchecked = false;
+        for (FieldData data : parser.getFieldList()) {
+            if (!data.isReference()) {
+                continue;
+            }
+            TypeName fieldType = getTypeName(data.getFieldType(), data.getType());
+            ExtraCodec codec = new ExtraCodec(data, fieldType);
+            if (format != DataFormat.flat) {
+                // the flat format has the key of every field already
+                builder.addField(FieldSpec.builder(TypeName.get(String.class), ExtraCodec.keyName(data),
+                        Modifier.STATIC, Modifier.FINAL)
+                        .initializer("$L + $S", TAG_FIELD, "." + data.getName())
+                        .build());
+            }
+            put.addCode(codec.putSpilled("target", intent));
+            resolve.addCode(codec.resolveReference(CodeBlock.builder()
+                    .add("source.$L($L + $T.TOKEN_SUFFIX)", intent ? "getStringExtra" : "getString",
+                            ExtraCodec.keyName(data), ExtraCodec.HANDOFF_STORE).build(), false));
+            unchecked |= fieldType instanceof ParameterizedTypeName;
+        }
+        if (unchecked) {
+            resolve.addAnnotation(UNCHECKED);
+        }
+        builder.addMethod(put.build()).addMethod(resolve.build());
+    }
+
+    /**
+     * reset all of the fields to default values
+     */
+    private MethodSpec createResetRequestData() {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(RESET_METHOD)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("reset all of the fields to default values\n")
+                .returns(requestDataClassName);
+        List<FieldData> fieldList = parser.getFieldList();
+        for (FieldData data : fieldList) {
+            TypeName type = getTypeName(data.getFieldType(), data.getType());
+            if (!StringUtils.isEmpty(data.getDefValue())) {
+                builder.addStatement(data.getType().equals(TypeNames.STRING) ? "this.$L = $S" : "this.$L = $L",
+                        data.getName(), data.getDefValue());
+            } else if (type.equals(TypeName.BOOLEAN)) {
+                builder.addStatement("this.$L = false", data.getName());
+            } else if (type.isPrimitive()) {
+                builder.addStatement("this.$L = 0", data.getName());
+            } else {
+                builder.addStatement("this.$L = null", data.getName());
+            }
+        }
+        if (format == DataFormat.flat) {
+            builder.addStatement("this.$L = null", EXTRAS_FIELD);
+            for (int i = 0; i < fieldList.size(); i += 32) {
+                builder.addStatement("this.$L = 0", decodedFlag(i));
+            }
+        }
+        return builder.addStatement("return this").build();
+    }
+
+    /**
+     * create the reset method of generated class,reset the data of this class and parent classes
+     * @param extra the statements to reset the other fields
+     */
+    MethodSpec createResetMethod(CodeBlock extra) {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(RESET_METHOD)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("reset the data of this class and parent classes to default values\n")
+                .returns(generateClassName)
+                .addCode(checkGeneration());
+        if (!isEmptyParams && format == DataFormat.flat) {
+            builder.addStatement("$L.$L()", REQUEST_DATA_FIELD_NAME, RESET_METHOD);
+        } else if (!isEmptyParams) {
+            // the RequestData may be still held by Intent or Bundle,so never modify it
+            builder.addStatement("$L = new $T()", REQUEST_DATA_FIELD_NAME, requestDataClassName);
+        }
+        builder.addCode(extra);
+        if (generateParentClassName != null) {
+            builder.beginControlFlow("if ($L != null)", PARENT_CLASS_FIELD_NAME)
+                    .addStatement("$L.$L()", PARENT_CLASS_FIELD_NAME, RESET_METHOD)
+                    .endControlFlow();
+        }
+        return builder.addStatement("return this").build();
+    }
+
+    /**
+     * add the thread confined reusable instance,reuse() checks out a handle of it,
+     * the handle is a new instance of generated class that shares the RequestData and parent chain of the pooled one.
+     * the generation of pooled instance is odd while a handle is used by caller and even after it is recycled,
+     * every handle keeps the generation it is issued with,so that a handle used after it is recycled is detected,
+     * even if the pooled instance has been checked out again.
+     * the pooled instance refers to its handle weakly,a handle dropped without createIntent/createBundle is collected
+     * and reuse() reclaims the pooled instance from it,instead of creating new instances for ever
+     */
+    void addReuse(TypeSpec.Builder typeBuilder) {
+        typeBuilder.addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(ThreadLocal.class), generateClassName),
+                POOL_FIELD, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .initializer("new $T<>()", ThreadLocal.class)
+                .build())
+                .addField(FieldSpec.builder(TypeName.INT, GENERATION_FIELD, Modifier.PRIVATE)
+                        .addJavadoc("the current generation of the pooled instance,or the generation a handle is issued with\n")
+                        .build())
+                .addField(FieldSpec.builder(generateClassName, SLOT_FIELD, Modifier.PRIVATE)
+                        .addJavadoc("the pooled instance this handle is checked out of,null if it is not got by reuse()\n")
+                        .build())
+                .addField(FieldSpec.builder(ParameterizedTypeName.get(ClassName.get(WeakReference.class), generateClassName),
+                        HANDLE_FIELD, Modifier.PRIVATE)
+                        .addJavadoc("the handle checked out of the pooled instance last time\n")
+                        .build());
+
+        MethodSpec.Builder reuse = MethodSpec.methodBuilder(REUSE_METHOD)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .addJavadoc("get a handle of the reusable instance of current thread,it is reset and recycled after it is used,\n")
+                .addJavadoc("so do not keep it or pass it to other thread,the handle throws if it is used after recycled.\n")
+                .addJavadoc("a new instance is returned if the reusable one is still used by caller\n")
+                .returns(generateClassName)
+                .addStatement("$T slot = $L.get()", generateClassName, POOL_FIELD)
+                .beginControlFlow("if (slot == null)")
+                .addStatement("slot = $L()", CREATE_METHOD)
+                .addStatement("$L.set(slot)", POOL_FIELD)
+                .nextControlFlow("else if ((slot.$L & 1) != 0)", GENERATION_FIELD)
+                .beginControlFlow("if (slot.$L.get() != null)", HANDLE_FIELD)
+                .addStatement("return $L()", CREATE_METHOD)
+                .endControlFlow()
+                .addCode("// the handle is dropped without being used,reset the data it left and make it stale\n")
+                .addStatement("slot.$L()", RESET_METHOD)
+                .addStatement("slot.$L++", GENERATION_FIELD)
+                .endControlFlow()
+                .addStatement("$T instance = new $T()", generateClassName, generateClassName);
+        if (!isEmptyParams) {
+            reuse.addStatement("instance.$L = slot.$L", REQUEST_DATA_FIELD_NAME, REQUEST_DATA_FIELD_NAME);
+        }
+        if (generateParentClassName != null) {
+            reuse.addStatement("instance.$L = slot.$L", PARENT_CLASS_FIELD_NAME, PARENT_CLASS_FIELD_NAME);
+        }
+        typeBuilder.addMethod(reuse.addStatement("instance.$L = slot", SLOT_FIELD)
+                .addStatement("instance.$L = ++slot.$L", GENERATION_FIELD, GENERATION_FIELD)
+                .addStatement("slot.$L = new $T<>(instance)", HANDLE_FIELD, WeakReference.class)
+                .addStatement("return instance")
+                .build());
+
+        MethodSpec.Builder recycle = MethodSpec.methodBuilder(RECYCLE_METHOD)
+                .addModifiers(Modifier.PRIVATE)
+                .addJavadoc("reset and return the data to the pooled instance,the parent created by this handle is kept\n")
+                .beginControlFlow("if ($L != null && $L.$L == $L)", SLOT_FIELD, SLOT_FIELD, GENERATION_FIELD, GENERATION_FIELD)
+                .addStatement("$L()", RESET_METHOD);
+        if (!isEmptyParams) {
+            recycle.addStatement("$L.$L = $L", SLOT_FIELD, REQUEST_DATA_FIELD_NAME, REQUEST_DATA_FIELD_NAME);
+        }
+        if (generateParentClassName != null) {
+            recycle.addStatement("$L.$L = $L", SLOT_FIELD, PARENT_CLASS_FIELD_NAME, PARENT_CLASS_FIELD_NAME);
+        }
+        typeBuilder.addMethod(recycle.addStatement("$L.$L++", SLOT_FIELD, GENERATION_FIELD)
+                .endControlFlow()
+                .build());
+
+        typeBuilder.addMethod(MethodSpec.methodBuilder(CHECK_GENERATION_METHOD)
+                .addModifiers(Modifier.PRIVATE)
+                .beginControlFlow("if ($L != null && $L.$L != $L)", SLOT_FIELD, SLOT_FIELD, GENERATION_FIELD, GENERATION_FIELD)
+                .addStatement("throw new $T($S)", IllegalStateException.class,
+                        "The instance got by reuse() has been recycled,get another one by reuse() or create()")
+                .endControlFlow()
+                .build());
+    }
+
+    /**
+     * the handle leaves the pool,its data is kept by the caller instead of being recycled,
+     * the pooled instance is dropped and the next reuse() creates another one
+     */
+    CodeBlock leavePool() {
+        return CodeBlock.builder()
+                .add(checkGeneration())
+                .beginControlFlow("if ($L != null)", SLOT_FIELD)
+                .beginControlFlow("if ($L.get() == $L)", POOL_FIELD, SLOT_FIELD)
+                .addStatement("$L.remove()", POOL_FIELD)
+                .endControlFlow()
+                .addStatement("$L = null", SLOT_FIELD)
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * the statement to check the instance is not recycled,empty if it is not reusable
+     */
+    CodeBlock checkGeneration() {
+        if (!reusable) {
+            return CodeBlock.builder().build();
+        }
+        return CodeBlock.builder().addStatement("$L()", CHECK_GENERATION_METHOD).build();
+    }
+
+    /**
+     * estimate the size of every field as extra,the values are read by getters
+     */
+    private MethodSpec createMeasureMethod() {
+        ClassName payloadSize = ClassName.get("com.lzh.processor.runtime", "PayloadSize");
+        List<FieldData> fieldList = parser.getFieldList();
+        CodeBlock.Builder code = CodeBlock.builder()
+                .add("return $T.meter($L, $L)", ExtraCodec.PAYLOAD_GUARD, TAG_FIELD, fieldList.size())
+                .indent().indent();
+        for (FieldData data : fieldList) {
+            String getter = StringUtils.getGetMethodName(data.getName());
+            if (data.isReference()) {
+                code.add("\n.add($S, $T.TOKEN_SIZE)", data.getName(), payloadSize);
+            } else if (format == DataFormat.flat) {
+                // every field has its own key in flat format
+                String key = ExtraCodec.keyName(data);
+                code.add("\n.add($L, $T.of($L) + $T.of($L()))", key, payloadSize, key, payloadSize, getter);
+            } else {
+                code.add("\n.add($S, $T.of($L()))", data.getName(), payloadSize, getter);
+            }
+        }
+        return MethodSpec.methodBuilder(MEASURE_METHOD)
+                .addJavadoc("estimate the size of fields passed by extras\n")
+                .returns(ExtraCodec.PAYLOAD_GUARD.nestedClass("Meter"))
+                .addCode(code.add(";\n").unindent().unindent().build())
+                .build();
+    }
+
+    /**
+     * the statements to put RequestData into target,check the payload size first if sizeGuard is enabled
+     * @param put the statement to put RequestData normally
+     */
+    CodeBlock createPutData(String target, boolean intent, CodeBlock put) {
+        if (!sizeGuard) {
+            return put;
+        }
+        if (format == DataFormat.flat) {
+            return CodeBlock.builder()
+                    .addStatement("$T $L = $L.$L()", ExtraCodec.PAYLOAD_GUARD.nestedClass("Meter"), METER_NAME,
+                            REQUEST_DATA_FIELD_NAME, MEASURE_METHOD)
+                    .addStatement("$L.$L($L, $L.check() ? $L : null)", REQUEST_DATA_FIELD_NAME, WRITE_METHOD,
+                            target, METER_NAME, METER_NAME)
+                    .build();
+        }
+        // the RequestData is passed as a whole,spill it if any field is too large
+        return CodeBlock.builder()
+                .beginControlFlow("if ($L.$L().check())", REQUEST_DATA_FIELD_NAME, MEASURE_METHOD)
+                .addStatement("$L.$L($L + $T.TOKEN_SUFFIX, $T.getDefault().put($L))", target,
+                        intent ? "putExtra" : "putString", TAG_FIELD, ExtraCodec.HANDOFF_STORE,
+                        ExtraCodec.HANDOFF_STORE, REQUEST_DATA_FIELD_NAME)
+                .nextControlFlow("else")
+                .add(put)
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * the statements to read the spilled RequestData from HandoffStore if it is not in extras
+     * @param condition the extra condition to check the source of extras
+     * @param getString the expression to get the token by key
+     */
+    CodeBlock createResolveSpilledData(String condition, String getString) {
+        if (!sizeGuard) {
+            return CodeBlock.builder().build();
+        }
+        return CodeBlock.builder()
+                .beginControlFlow("if (requestData == null$L)", condition)
+                .addStatement("requestData = ($T) $T.getDefault().get($L)", requestDataClassName, ExtraCodec.HANDOFF_STORE,
+                        CodeBlock.builder().add(getString, CodeBlock.builder()
+                                .add("$L + $T.TOKEN_SUFFIX", TAG_FIELD, ExtraCodec.HANDOFF_STORE).build()).build())
+                .endControlFlow()
+                .build();
+    }
+
+    /**
+     * the qualified name of Intent or Bundle that the flat extras are put into
+     */
+    abstract String getExtrasTarget();
+
+    /**
+     * RequestData has toBytes/fromBytes of {@link BinaryCodec},only if the generated class reads or writes the bytes
+     */
+    abstract boolean needBinaryCodec();
+
+    /**
+     * the int field that has the decoded flag of field at index
+     */
+    static String decodedFlag(int index) {
+        return "decoded" + index / 32;
+    }
+
+    private static String decodedBit(int index) {
+        return "0x" + Integer.toHexString(1 << (index % 32));
+    }
+
+    /**
+     * decode the field from extras on first access
+     */
+    MethodSpec createLazyGetRequestBuilder(FieldData data, int index) {
+        String getMethodName = StringUtils.getGetMethodName(data.getName());
+        ExtraCodec codec = new ExtraCodec(data, getTypeName(data.getFieldType(), data.getType()));
+        String flag = decodedFlag(index);
+        String bit = decodedBit(index);
+        boolean spilled = sizeGuard || data.isReference();
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(getMethodName)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(getTypeName(data.getFieldType(), data.getType()))
+                .beginControlFlow("if (($L & $L) == 0)", flag, bit)
+                .addStatement("$L |= $L", flag, bit)
+                .beginControlFlow("if ($L != null)", EXTRAS_FIELD)
+                .addCode(codec.get(EXTRAS_FIELD, spilled))
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return this.$L", data.getName())
+                .addJavadoc(data.getDoc());
+        if (codec.isUnchecked(spilled)) {
+            builder.addAnnotation(UNCHECKED);
+        }
+        return builder.build();
+    }
+
+    /**
+     * the field set by setter should not be decoded from extras any more
+     */
+    MethodSpec createLazySetRequestBuilder(FieldData data, int index) {
+        String setMethodName = StringUtils.getSetMethodName(data.getName());
+        return MethodSpec.methodBuilder(setMethodName)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(getTypeName(data.getFieldType(), data.getType()), data.getName())
+                .returns(requestDataClassName)
+                .addStatement("$L |= $L", decodedFlag(index), decodedBit(index))
+                .addStatement("this.$L = $L", data.getName(), data.getName())
+                .addStatement("return this")
+                .addJavadoc(data.getDoc())
+                .build();
+    }
+
+    /**
+     * cache of getData,keyed by the intent or fragment weakly
+     */
+    FieldSpec createDataCacheField(TypeName key) {
+        TypeName map = ParameterizedTypeName.get(ClassName.get(Map.class), key, requestDataClassName);
+        return FieldSpec.builder(map, DATA_CACHE_FIELD, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                .addJavadoc("the decoded RequestData,getData returns the same instance for the same $L\n", key)
+                .initializer("$T.synchronizedMap(new $T<$T, $T>())",
+                        Collections.class, WeakHashMap.class, key, requestDataClassName)
+                .build();
+    }
+
+    /**
+     * create static getData method,decode RequestData once and cache it by the param
+     * @param decode statements to assign the local variable requestData,the param is not null
+     */
+    MethodSpec createCachedGetDataMethod(String name, TypeName key, String param, CodeBlock decode) {
+        return MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                .returns(requestDataClassName)
+                .addParameter(key, param)
+                .beginControlFlow("if ($L == null)", param)
+                .addStatement("return new $T()", requestDataClassName)
+                .endControlFlow()
+                .addStatement("$T requestData = $L.get($L)", requestDataClassName, DATA_CACHE_FIELD, param)
+                .beginControlFlow("if (requestData == null)")
+                .addCode(decode)
+                .addStatement("$L.put($L, requestData)", DATA_CACHE_FIELD, param)
+                .endControlFlow()
+                .addStatement("return requestData")
+                .build();
+    }
+
     MethodSpec createGetRequestBuilder(FieldData data) {
         String getMethodName = StringUtils.getGetMethodName(data.getName());
         return MethodSpec.methodBuilder(getMethodName)
@@ -114,9 +786,13 @@ public abstract class FileFactory {
     FieldSpec createField(FieldData data) {
         FieldSpec.Builder builder = FieldSpec.builder(getTypeName(data.getFieldType(), data.getType()), data.getName(), Modifier.PRIVATE)
                 .addJavadoc(data.getDoc());
+        if (data.isReference()) {
+            // passed by token of HandoffStore,never copied by serialization
+            builder.addModifiers(Modifier.TRANSIENT);
+        }
         if (!StringUtils.isEmpty(data.getDefValue())) {
             builder.initializer(
-                    (data.getType().equals(TypeName.get(String.class)) ? "$S" : "$L"),
+                    (data.getType().equals(TypeNames.STRING) ? "$S" : "$L"),
                     data.getDefValue());
         }
 
@@ -128,7 +804,7 @@ public abstract class FileFactory {
         return MethodSpec.methodBuilder(setMethodName)
                 .addModifiers(Modifier.PUBLIC)
                 .addParameter(getTypeName(data.getFieldType(), data.getType()), data.getName())
-                .returns(getTypeName(REQUEST_DATA_CLASS))
+                .returns(requestDataClassName)
                 .addStatement("this.$L = $L", data.getName(), data.getName())
                 .addStatement("return this")
                 .addJavadoc(data.getDoc())
@@ -136,22 +812,90 @@ public abstract class FileFactory {
 
     }
 
-    void build(TypeSpec.Builder typeBuilder) throws IOException {
+    /**
+     * the canonical form of everything the generated code depends on,see {@link OutputCache}.
+     * only the snapshot values are used,so it could be called on any thread
+     */
+    String fingerprint() {
+        StringBuilder builder = new StringBuilder()
+                .append(getClass().getSimpleName()).append('|')
+                .append(targetClassName).append('|')
+                .append(generateClassName).append('|')
+                .append(generateParentClassName).append('|')
+                .append(format).append('|')
+                .append(isAbstract).append('|')
+                .append(reusable).append('|')
+                .append(sizeGuard).append('|')
+                .append(parser.getRoute()).append('\n');
+        appendFields(builder, parser.getFieldList());
+        builder.append("parent\n");
+        appendFields(builder, parser.getParentFieldList());
+        return builder.toString();
+    }
+
+    private static void appendFields(StringBuilder builder, List<FieldData> fieldList) {
+        for (FieldData data : fieldList) {
+            builder.append(data.getName()).append('|')
+                    .append(data.getType()).append('|')
+                    .append(data.getFieldType()).append('|')
+                    .append(data.isParcelable()).append('|')
+                    .append(data.isSerializable()).append('|')
+                    .append(data.getTransport()).append('|')
+                    .append(data.getDefValue().length()).append(':').append(data.getDefValue()).append('|')
+                    .append(data.getDoc().length()).append(':').append(data.getDoc()).append('\n');
+        }
+    }
+
+    JavaFile build(TypeSpec.Builder typeBuilder) {
+        // the annotated class is the only originating element,so gradle can treat this processor as isolating.
+        // changes of parent class are covered by recompiling the subclass that depends on it.
+        typeBuilder.addOriginatingElement(parser.getElement());
         JavaFile.Builder javaBuilder = JavaFile.builder(pkgName, typeBuilder.build());
         javaBuilder.addFileComment("The file is auto-generate by processorTool,do not modify!");
-        javaBuilder.build().writeTo(UtilMgr.getMgr().getFiler());
+        return javaBuilder.build();
     }
 
     /**
      * create private constructor method
      */
     MethodSpec createPrivateConstructor() {
-        MethodSpec.Builder builder = MethodSpec.constructorBuilder()
-                .addModifiers(Modifier.PRIVATE);
+        return MethodSpec.constructorBuilder()
+                .addModifiers(Modifier.PRIVATE)
+                .build();
+    }
+
+    /**
+     * the generated class of parent is created on first set of parent field,
+     * so that the untouched levels of a hierarchy cost nothing
+     */
+    MethodSpec createParentMethod() {
+        return MethodSpec.methodBuilder(PARENT_CLASS_FIELD_NAME)
+                .addModifiers(Modifier.PRIVATE)
+                .returns(generateParentClassName)
+                .beginControlFlow("if ($L == null)", PARENT_CLASS_FIELD_NAME)
+                .addStatement("$L = $T.$L()", PARENT_CLASS_FIELD_NAME, generateParentClassName, CREATE_METHOD)
+                .endControlFlow()
+                .addStatement("return $L", PARENT_CLASS_FIELD_NAME)
+                .build();
+    }
+
+    /**
+     * create the public method to put data of this class and parent classes into the single target,
+     * the parent is skipped if none of its fields is set
+     * @param put the statements to put data of this class
+     */
+    MethodSpec createFillMethod(String name, TypeName type, String target, CodeBlock put) {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder(name)
+                .addModifiers(Modifier.PUBLIC)
+                .addJavadoc("put the data of this class and parent classes into $L\n", target)
+                .addParameter(type, target)
+                .addCode(checkGeneration())
+                .addCode(put);
         if (generateParentClassName != null) {
-            builder.addStatement("$L = $L.$L()", PARENT_CLASS_FIELD_NAME, generateParentClassName, CREATE_METHOD);
+            builder.beginControlFlow("if ($L != null)", PARENT_CLASS_FIELD_NAME)
+                    .addStatement("$L.$L($L)", PARENT_CLASS_FIELD_NAME, name, target)
+                    .endControlFlow();
         }
-
         return builder.build();
     }
 
@@ -163,7 +907,7 @@ public abstract class FileFactory {
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
                 .addStatement("$T instance = new $T()", generateClassName, generateClassName);
         if (!isEmptyParams) {
-            createBuilder.addStatement("instance.$L = new $L()", REQUEST_DATA_FIELD_NAME, REQUEST_DATA_CLASS);
+            createBuilder.addStatement("instance.$L = new $T()", REQUEST_DATA_FIELD_NAME, requestDataClassName);
         }
         return createBuilder.addStatement("return instance")
                 .returns(generateClassName)
@@ -180,6 +924,7 @@ public abstract class FileFactory {
         if (generateParentClassName == null) {
             return;
         }
+        typeBuilder.addMethod(createParentMethod());
         List<FieldData> parentFieldList = parser.getParentFieldList();
         for (int i = 0; i < parentFieldList.size(); i++) {
             FieldData data = parentFieldList.get(i);
@@ -193,7 +938,8 @@ public abstract class FileFactory {
                 .addModifiers(Modifier.PUBLIC)
                 .addParameter(getTypeName(data.getFieldType(),data.getType()),data.getName())
                 .returns(generateClassName)
-                .addStatement("$L.$L($L)",PARENT_CLASS_FIELD_NAME,setMethodName,data.getName())
+                .addCode(checkGeneration())
+                .addStatement("$L().$L($L)",PARENT_CLASS_FIELD_NAME,setMethodName,data.getName())
                 .addStatement("return this")
                 .addJavadoc(data.getDoc())
                 .build();
@@ -205,6 +951,7 @@ public abstract class FileFactory {
                 .addModifiers(Modifier.PUBLIC)
                 .returns(generateClassName)
                 .addParameter(getTypeName(data.getFieldType(), data.getType()), data.getName())
+                .addCode(checkGeneration())
                 .addStatement("this.$L.$L($L)",REQUEST_DATA_FIELD_NAME,setMethodName,data.getName())
                 .addStatement("return this")
                 .addJavadoc(data.getDoc())
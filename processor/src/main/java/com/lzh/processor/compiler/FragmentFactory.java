@@ -1,13 +1,13 @@
 package com.lzh.processor.compiler;
 
-
+import com.lzh.processor.annoapi.DataFormat;
+import com.squareup.javapoet.CodeBlock;
 import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
 import com.squareup.javapoet.MethodSpec;
 import com.squareup.javapoet.TypeName;
 import com.squareup.javapoet.TypeSpec;
 
-import java.io.IOException;
-
 import javax.lang.model.element.Modifier;
 
 /**
@@ -18,6 +18,7 @@ public class FragmentFactory extends FileFactory {
     static final String BUILD_METHOD = "build";
     static final String GET_DATA_METHOD = "getData";
     static final String CREATE_BUNDLE_NAME = "createBundle";
+    static final String FILL_BUNDLE_NAME = "fillBundle";
 
     public static final String BUNDLE_NAME = "android.os.Bundle";
 
@@ -31,12 +32,13 @@ public class FragmentFactory extends FileFactory {
     }
 
     @Override
-    void generateCode() throws IOException {
+    JavaFile generateCode() {
         TypeSpec.Builder typeBuilder = generateTypeBuilder();
         if (!isEmptyParams) {
             // create inner data class method
             typeBuilder.addType(generateRequestData());
             // create get data method
+            typeBuilder.addField(createDataCacheField(targetClassName));
             typeBuilder.addMethod(createGetDataMethod());
         }
         // create filed
@@ -45,15 +47,21 @@ public class FragmentFactory extends FileFactory {
         typeBuilder.addMethod(createPrivateConstructor());
         // add create bundle method
         typeBuilder.addMethod(createBundle());
+        typeBuilder.addMethod(createFillBundle());
         // add create method
         typeBuilder.addMethod(createMethod());
+        // add reset method
+        typeBuilder.addMethod(createResetMethod(CodeBlock.builder().build()));
+        if (reusable) {
+            addReuse(typeBuilder);
+        }
         // create set params method
         addParamsSetMethod(typeBuilder);
         if (!isAbstract) {
             // create build method
             typeBuilder.addMethod(buildMethod());
         }
-        build(typeBuilder);
+        return build(typeBuilder);
     }
 
     private MethodSpec createBundle() {
@@ -61,38 +69,79 @@ public class FragmentFactory extends FileFactory {
         MethodSpec.Builder builder = MethodSpec.methodBuilder(CREATE_BUNDLE_NAME)
                 .addModifiers(Modifier.PUBLIC)
                 .returns(bundle)
-                .addStatement("$T bundle = new $T()", bundle, bundle);
-
-        if (!isEmptyParams) {
-            builder.addStatement("bundle.putSerializable($L,$L)",TAG_FIELD,REQUEST_DATA_FIELD_NAME);
-        }
-
-        if (generateParentClassName != null) {
-            builder.addStatement("bundle.putAll($L.$L())",PARENT_CLASS_FIELD_NAME,CREATE_BUNDLE_NAME);
+                .addCode(checkGeneration())
+                .addStatement("$T bundle = new $T()", bundle, bundle)
+                .addStatement("$L(bundle)", FILL_BUNDLE_NAME);
+        if (reusable) {
+            builder.addStatement("$L()", RECYCLE_METHOD);
         }
         builder.addStatement("return bundle");
 
         return builder.build();
     }
 
+    private MethodSpec createFillBundle() {
+        CodeBlock.Builder builder = CodeBlock.builder();
+        if (!isEmptyParams && format == DataFormat.flat) {
+            builder.add(createPutData("bundle", false, CodeBlock.builder()
+                    .addStatement("$L.$L(bundle)",REQUEST_DATA_FIELD_NAME,WRITE_METHOD).build()));
+        } else if (!isEmptyParams) {
+            String put = format == DataFormat.parcelable ? "putParcelable" : "putSerializable";
+            builder.add(createPutData("bundle", false, CodeBlock.builder()
+                    .addStatement("bundle.$L($L,$L)",put,TAG_FIELD,REQUEST_DATA_FIELD_NAME).build()));
+            if (hasReference) {
+                builder.addStatement("$L.$L(bundle)", REQUEST_DATA_FIELD_NAME, PUT_REFERENCES_METHOD);
+            }
+        }
+        return createFillMethod(FILL_BUNDLE_NAME, getTypeName(BUNDLE_NAME), "bundle", builder.build());
+    }
+
+    @Override
+    String getExtrasTarget() {
+        return BUNDLE_NAME;
+    }
+
+    @Override
+    boolean needBinaryCodec() {
+        return false;
+    }
+
+    /**
+     * decode RequestData from arguments once,the result is cached by the fragment
+     */
     private MethodSpec createGetDataMethod() {
         String params = "target";
-        TypeName type = getTypeName(parser.getElement());
-        return MethodSpec.methodBuilder(GET_DATA_METHOD)
-                .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
-                .returns(getTypeName(REQUEST_DATA_CLASS))
-                .addParameter(type, params)
-                .addStatement("return ($L)$L.getArguments().getSerializable($L)",REQUEST_DATA_CLASS,params,TAG_FIELD)
-                .build();
+        CodeBlock.Builder decode = CodeBlock.builder()
+                .addStatement("$T arguments = $L.getArguments()", getTypeName(BUNDLE_NAME), params);
+        if (format == DataFormat.flat) {
+            decode.addStatement("requestData = new $T()", requestDataClassName)
+                    .beginControlFlow("if (arguments != null)")
+                    .addStatement("requestData.$L(arguments)", READ_METHOD)
+                    .endControlFlow();
+        } else {
+            String get = format == DataFormat.parcelable ? "getParcelable" : "getSerializable";
+            decode.addStatement("requestData = arguments == null ? null : ($T) arguments.$L($L)",
+                    requestDataClassName, get, TAG_FIELD)
+                    .add(createResolveSpilledData(" && arguments != null", "arguments.getString($L)"))
+                    .beginControlFlow("if (requestData == null)")
+                    .addStatement("requestData = new $T()", requestDataClassName)
+                    .endControlFlow();
+            if (hasReference) {
+                decode.beginControlFlow("if (arguments != null)")
+                        .addStatement("requestData.$L(arguments)", RESOLVE_REFERENCES_METHOD)
+                        .endControlFlow();
+            }
+        }
+        return createCachedGetDataMethod(GET_DATA_METHOD, targetClassName, params, decode.build());
     }
 
     private MethodSpec buildMethod() {
         TypeName bundle = getTypeName(BUNDLE_NAME);
-        TypeName clz = getTypeName(parser.getElement());
+        TypeName clz = targetClassName;
         MethodSpec.Builder builder = MethodSpec.methodBuilder(BUILD_METHOD)
                 .addModifiers(Modifier.PUBLIC)
                 .addJavadoc("build fragment instance of $L",clz)
-                .returns(getTypeName(parser.getElement()))
+                .returns(targetClassName)
                 .addStatement("$T instance = new $T()",clz,clz)
                 .addStatement("$T bundle = $L()",bundle,CREATE_BUNDLE_NAME)
                 .addStatement("instance.setArguments(bundle)")
@@ -107,7 +156,7 @@ public class FragmentFactory extends FileFactory {
                 .initializer("$L.class.getCanonicalName()", parser.getClzName()).build());
         if (!isEmptyParams) {
             // add RequestData filed
-            typeBuilder.addField(FieldSpec.builder(getTypeName(REQUEST_DATA_CLASS), REQUEST_DATA_FIELD_NAME, Modifier.PUBLIC).build());
+            typeBuilder.addField(FieldSpec.builder(requestDataClassName, REQUEST_DATA_FIELD_NAME, Modifier.PUBLIC).build());
         }
         if (generateParentClassName != null) {
             typeBuilder.addField(FieldSpec.builder(generateParentClassName,PARENT_CLASS_FIELD_NAME,Modifier.PRIVATE).build());
@@ -0,0 +1,112 @@
+package com.lzh.processor.compiler;
+
+import com.lzh.processor.data.FieldData;
+import com.lzh.processor.util.ProcessorContext;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.TypeElement;
+
+/**
+ * Cache of the resolved class hierarchy in one round,keyed by qualified name.
+ * The parent classes shared by many classes that use @Params are resolved only once.
+ * Element instances should not be shared between rounds,so create a new cache for each round.
+ */
+class HierarchyCache {
+
+    private final Map<String, Node> nodes = new HashMap<>();
+    private final ProcessorContext context;
+    private final ProcessorStats stats;
+
+    HierarchyCache(ProcessorContext context, ProcessorStats stats) {
+        this.context = context;
+        this.stats = stats;
+    }
+
+    /**
+     * resolve the class and all of its parent classes
+     */
+    Node resolve(TypeElement element) {
+        long start = System.nanoTime();
+        try {
+            return resolveNode(element);
+        } finally {
+            stats.hierarchyNanos += System.nanoTime() - start;
+        }
+    }
+
+    private Node resolveNode(TypeElement element) {
+        if (element == null) {
+            return null;
+        }
+        String name = element.getQualifiedName().toString();
+        Node node = nodes.get(name);
+        if (node != null) {
+            stats.hierarchyHits++;
+            return node;
+        }
+        stats.hierarchyMisses++;
+
+        TypeElement parent = (TypeElement) context.getTypeUtils().asElement(element.getSuperclass());
+        Node parentNode = resolveNode(parent);
+        node = new Node(name, getType(name, parentNode), ElementParser.parseField(element, context), parent, parentNode);
+        nodes.put(name, node);
+        return node;
+    }
+
+    private ElementParser.ElementType getType(String name, Node parentNode) {
+        if (ElementParser.ACT_NAME.equals(name)) {
+            return ElementParser.ElementType.ACTTIVITY;
+        } else if (ElementParser.FRAG_NAME.equals(name) || ElementParser.V4_FRAG_NAME.equals(name)) {
+            return ElementParser.ElementType.FRAGMENT;
+        }
+        return parentNode == null ? null : parentNode.type;
+    }
+
+    static class Node {
+        /**
+         * qualified name of the class
+         */
+        final String name;
+        /**
+         * activity or fragment,null if it is neither
+         */
+        final ElementParser.ElementType type;
+        /**
+         * fields defined by @Params of this class
+         */
+        final List<FieldData> fields;
+        /**
+         * the nearest parent class that defines fields by @Params,null if not exist
+         */
+        final TypeElement paramsParent;
+        /**
+         * fields defined by all of the parent classes,fields of the nearest parent come first
+         */
+        final List<FieldData> parentFields;
+        /**
+         * the node of parent class,null if it is java.lang.Object
+         */
+        final Node parentNode;
+
+        Node(String name, ElementParser.ElementType type, List<FieldData> fields, TypeElement parent, Node parentNode) {
+            this.name = name;
+            this.type = type;
+            this.parentNode = parentNode;
+            this.fields = Collections.unmodifiableList(fields);
+            if (parentNode == null) {
+                this.paramsParent = null;
+                this.parentFields = Collections.emptyList();
+            } else {
+                this.paramsParent = parentNode.fields.isEmpty() ? parentNode.paramsParent : parent;
+                List<FieldData> list = new ArrayList<>(parentNode.fields);
+                list.addAll(parentNode.parentFields);
+                this.parentFields = Collections.unmodifiableList(list);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.lzh.processor.compiler;
+
+import com.squareup.javapoet.JavaFile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cache of the rendered java files between builds,enabled by processor option {@link #OPTION}.
+ * <p>
+ * Every file is kept in the cache directory with the fingerprint of {@link FileFactory#fingerprint()},
+ * the fingerprint also contains the versions of processor itself and JavaPoet.
+ * When the fingerprint is not changed,the cached content is written again without building and rendering it.
+ * The files are read and written on the threads of {@link CodeGenerator},one file per generated class.
+ */
+class OutputCache {
+
+    static final String OPTION = "processortools.cacheDir";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String SUFFIX = ".cache";
+
+    private final File dir;
+    private final String version;
+
+    OutputCache(File dir) {
+        this.dir = dir;
+        this.version = processorVersion();
+    }
+
+    /**
+     * @return the cached content,or null if it is absent or the fingerprint is changed
+     */
+    String get(String qualifiedName, String fingerprint) {
+        File file = new File(dir, qualifiedName + SUFFIX);
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            String cached = new String(read(file), UTF_8);
+            String key = hash(fingerprint) + "\n";
+            return cached.startsWith(key) ? cached.substring(key.length()) : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * keep the content,a failure to write the cache never fails the build
+     */
+    void put(String qualifiedName, String fingerprint, String content) {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        File file = new File(dir, qualifiedName + SUFFIX);
+        // write to a temporary file of unique name and move it atomically,
+        // so neither a broken build nor another build writing the same class leaves a half written cache
+        File temp = null;
+        try {
+            temp = File.createTempFile(qualifiedName, ".tmp", dir);
+            OutputStream output = new FileOutputStream(temp);
+            try {
+                output.write((hash(fingerprint) + "\n" + content).getBytes(UTF_8));
+            } finally {
+                output.close();
+            }
+            try {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            if (temp != null) {
+                temp.delete();
+            }
+        }
+    }
+
+    private String hash(String fingerprint) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest((version + "\n" + fingerprint).getBytes(UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * read the opened file to the end,the length of path is not used because the file could be replaced by other build
+     */
+    private static byte[] read(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int count;
+            while ((count = input.read(buffer)) >= 0) {
+                output.write(buffer, 0, count);
+            }
+            return output.toByteArray();
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * the versions of processor and JavaPoet that renders the files,
+     * the cache is invalid when either of them is updated
+     */
+    static String processorVersion() {
+        return codeVersion(OutputCache.class) + ";" + codeVersion(JavaFile.class);
+    }
+
+    /**
+     * the location and modified time of the jar or classes of clz,with the version of its jar if it is declared
+     */
+    private static String codeVersion(Class<?> clz) {
+        try {
+            File location = new File(clz.getProtectionDomain().getCodeSource().getLocation().toURI());
+            long modified = location.lastModified();
+            File[] classes = new File(location, clz.getPackage().getName().replace('.', File.separatorChar)).listFiles();
+            for (int i = 0; location.isDirectory() && classes != null && i < classes.length; i++) {
+                // the classes in a directory,such as the output of the processor module
+                modified = Math.max(modified, classes[i].lastModified());
+            }
+            return location + "@" + modified + "@" + clz.getPackage().getImplementationVersion();
+        } catch (Exception e) {
+            // no code source,the cache could not be trusted across updates
+            return String.valueOf(System.nanoTime());
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.lzh.processor.compiler;
+
+import com.lzh.processor.data.FieldData;
+import com.lzh.processor.util.TypeNames;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.TypeName;
+
+import java.io.Serializable;
+
+/**
+ * Create the statements to write a field of RequestData into android.os.Parcel and read it back,
+ * specialized by the type of field.
+ * <p>
+ * Primitives,String,primitive arrays and String list use the typed methods of Parcel,
+ * arrays and lists of Parcelable use writeTypedArray/writeTypedList with the CREATOR of component type,
+ * other lists use writeList,other arrays and sets are written as Serializable
+ * because Parcel can not restore their runtime type,anything else uses writeValue.
+ */
+class ParcelCodec {
+
+    static final String PARCEL_NAME = "android.os.Parcel";
+
+    private final String parcel;
+    private final ClassName requestData;
+
+    /**
+     * @param parcel the name of parcel variable
+     * @param requestData the class of RequestData,its class loader is used to read values
+     */
+    ParcelCodec(String parcel, ClassName requestData) {
+        this.parcel = parcel;
+        this.requestData = requestData;
+    }
+
+    /**
+     * the statement to write field of this object into parcel
+     */
+    CodeBlock write(FieldData data, TypeName fieldTypeName) {
+        String name = data.getName();
+        TypeName type = data.getType();
+        switch (data.getFieldType()) {
+            case array:
+                String arrayMethod = arrayMethod(type);
+                if (arrayMethod != null) {
+                    return CodeBlock.builder().addStatement("$L.write$LArray(this.$L)", parcel, arrayMethod, name).build();
+                }
+                if (isTyped(data)) {
+                    return CodeBlock.builder().addStatement("$L.writeTypedArray(this.$L, 0)", parcel, name).build();
+                }
+                return CodeBlock.builder().addStatement("$L.writeSerializable(this.$L)", parcel, name).build();
+            case list:
+                if (type.equals(TypeNames.STRING)) {
+                    return CodeBlock.builder().addStatement("$L.writeStringList(this.$L)", parcel, name).build();
+                }
+                if (isTyped(data)) {
+                    return CodeBlock.builder().addStatement("$L.writeTypedList(this.$L)", parcel, name).build();
+                }
+                return CodeBlock.builder().addStatement("$L.writeList(this.$L)", parcel, name).build();
+            case set:
+                return CodeBlock.builder().addStatement("$L.writeSerializable(($T) this.$L)",
+                        parcel, Serializable.class, name).build();
+            case Serializable:
+            default:
+                if (type.equals(TypeName.BOOLEAN)) {
+                    return CodeBlock.builder().addStatement("$L.writeByte(this.$L ? (byte) 1 : (byte) 0)", parcel, name).build();
+                }
+                if (type.equals(TypeName.CHAR) || type.equals(TypeName.SHORT)) {
+                    return CodeBlock.builder().addStatement("$L.writeInt(this.$L)", parcel, name).build();
+                }
+                String scalarMethod = scalarMethod(type);
+                if (scalarMethod != null) {
+                    return CodeBlock.builder().addStatement("$L.write$L(this.$L)", parcel, scalarMethod, name).build();
+                }
+                return CodeBlock.builder().addStatement("$L.writeValue(this.$L)", parcel, name).build();
+        }
+    }
+
+    /**
+     * the statement to read field of this object from parcel,in the same order of {@link #write(FieldData, TypeName)}
+     */
+    CodeBlock read(FieldData data, TypeName fieldTypeName) {
+        String name = data.getName();
+        TypeName type = data.getType();
+        switch (data.getFieldType()) {
+            case array:
+                String arrayMethod = arrayMethod(type);
+                if (arrayMethod != null) {
+                    return CodeBlock.builder().addStatement("this.$L = $L.create$LArray()", name, parcel, arrayMethod).build();
+                }
+                if (isTyped(data)) {
+                    return CodeBlock.builder().addStatement("this.$L = $L.createTypedArray($T.CREATOR)", name, parcel, type).build();
+                }
+                return CodeBlock.builder().addStatement("this.$L = ($T) $L.readSerializable()", name, fieldTypeName, parcel).build();
+            case list:
+                if (type.equals(TypeNames.STRING)) {
+                    return CodeBlock.builder().addStatement("this.$L = $L.createStringArrayList()", name, parcel).build();
+                }
+                if (isTyped(data)) {
+                    return CodeBlock.builder().addStatement("this.$L = $L.createTypedArrayList($T.CREATOR)", name, parcel, type).build();
+                }
+                return CodeBlock.builder().addStatement("this.$L = $L.readArrayList($T.class.getClassLoader())",
+                        name, parcel, requestData).build();
+            case set:
+                return CodeBlock.builder().addStatement("this.$L = ($T) $L.readSerializable()", name, fieldTypeName, parcel).build();
+            case Serializable:
+            default:
+                if (type.equals(TypeName.BOOLEAN)) {
+                    return CodeBlock.builder().addStatement("this.$L = $L.readByte() != 0", name, parcel).build();
+                }
+                if (type.equals(TypeName.CHAR) || type.equals(TypeName.SHORT)) {
+                    return CodeBlock.builder().addStatement("this.$L = ($T) $L.readInt()", name, type, parcel).build();
+                }
+                String scalarMethod = scalarMethod(type);
+                if (scalarMethod != null) {
+                    return CodeBlock.builder().addStatement("this.$L = $L.read$L()", name, parcel, scalarMethod).build();
+                }
+                return CodeBlock.builder().addStatement("this.$L = ($T) $L.readValue($T.class.getClassLoader())",
+                        name, fieldTypeName.box(), parcel, requestData).build();
+        }
+    }
+
+    /**
+     * the statement of {@link #read(FieldData, TypeName)} assigns a raw list or casts to a parameterized set
+     */
+    static boolean isUnchecked(FieldData data) {
+        switch (data.getFieldType()) {
+            case list:
+                return !data.getType().equals(TypeNames.STRING) && !isTyped(data);
+            case set:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * the array or list of Parcelable is written by the typed methods,
+     * android.os.Parcelable itself has no CREATOR and is written as the others
+     */
+    private static boolean isTyped(FieldData data) {
+        return data.isParcelable() && !data.getType().toString().equals(ElementParser.PARCELABLE_NAME);
+    }
+
+    /**
+     * the suffix of Parcel.writeXxx/readXxx for scalar type,null if there is no typed method
+     */
+    private static String scalarMethod(TypeName type) {
+        if (type.equals(TypeName.INT)) {
+            return "Int";
+        } else if (type.equals(TypeName.LONG)) {
+            return "Long";
+        } else if (type.equals(TypeName.FLOAT)) {
+            return "Float";
+        } else if (type.equals(TypeName.DOUBLE)) {
+            return "Double";
+        } else if (type.equals(TypeName.BYTE)) {
+            return "Byte";
+        } else if (type.equals(TypeNames.STRING)) {
+            return "String";
+        }
+        return null;
+    }
+
+    /**
+     * the infix of Parcel.writeXxxArray/createXxxArray for component type,null if there is no typed method
+     */
+    private static String arrayMethod(TypeName type) {
+        if (type.equals(TypeName.INT)) {
+            return "Int";
+        } else if (type.equals(TypeName.LONG)) {
+            return "Long";
+        } else if (type.equals(TypeName.FLOAT)) {
+            return "Float";
+        } else if (type.equals(TypeName.DOUBLE)) {
+            return "Double";
+        } else if (type.equals(TypeName.BYTE)) {
+            return "Byte";
+        } else if (type.equals(TypeName.BOOLEAN)) {
+            return "Boolean";
+        } else if (type.equals(TypeName.CHAR)) {
+            return "Char";
+        } else if (type.equals(TypeNames.STRING)) {
+            return "String";
+        }
+        return null;
+    }
+}
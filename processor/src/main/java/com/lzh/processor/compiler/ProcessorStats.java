@@ -0,0 +1,133 @@
+package com.lzh.processor.compiler;
+
+import java.util.Locale;
+
+/**
+ * Counters and phase timings of the processor,reported when processor option {@link #OPTION} is true:
+ * a one-line NOTE by Messager and the json file {@link #FILE_NAME} in the generated source directory.
+ * <p>
+ * The phases are:
+ * <ul>
+ * <li>discovery: collect the annotated elements and check their parent classes</li>
+ * <li>parse: ElementParser.createParser and createFactory,includes the hierarchy walks</li>
+ * <li>hierarchy: the hierarchy walks of {@link HierarchyCache}</li>
+ * <li>build: FileFactory.generateCode,summed over the threads of {@link CodeGenerator}</li>
+ * <li>render: JavaFile to string,summed over the threads of {@link CodeGenerator}</li>
+ * <li>write: write the rendered files by Filer</li>
+ * </ul>
+ * The hits and misses of {@link OutputCache} are also reported when the cache is enabled.
+ */
+class ProcessorStats {
+
+    static final String OPTION = "processortools.stats";
+
+    static final String FILE_NAME = "processortools-stats.json";
+
+    int rounds;
+    int elements;
+    int fields;
+    int files;
+    long bytes;
+
+    long discoveryNanos;
+    long parseNanos;
+    long buildNanos;
+    long renderNanos;
+    long writeNanos;
+    long totalNanos;
+
+    int cacheHits;
+    int cacheMisses;
+
+    int hierarchyHits;
+    int hierarchyMisses;
+    long hierarchyNanos;
+
+    /**
+     * hit rate of {@link HierarchyCache},in percent
+     */
+    double hierarchyHitRate() {
+        int total = hierarchyHits + hierarchyMisses;
+        return total == 0 ? 0 : hierarchyHits * 100.0 / total;
+    }
+
+    /**
+     * count the written file
+     * @param content the content written in UTF-8
+     */
+    void addFile(CharSequence content) {
+        files++;
+        bytes += utf8Length(content);
+    }
+
+    String cacheSummary() {
+        return String.format(Locale.US, "processor tool cache: %d hits,%d misses", cacheHits, cacheMisses);
+    }
+
+    String summary() {
+        return String.format(Locale.US, "processor tool stats: %d elements,%d fields,%d files,%d bytes in %d rounds,"
+                        + "total %.2fms,discovery %.2fms,parse %.2fms,build %.2fms,render %.2fms,write %.2fms,"
+                        + "output cache %d hits,%d misses,hierarchy cache %d hits,%d misses,hit rate %.1f%%,%.2fms",
+                elements, fields, files, bytes, rounds,
+                millis(totalNanos), millis(discoveryNanos), millis(parseNanos), millis(buildNanos),
+                millis(renderNanos), millis(writeNanos), cacheHits, cacheMisses,
+                hierarchyHits, hierarchyMisses, hierarchyHitRate(), millis(hierarchyNanos));
+    }
+
+    String toJson() {
+        return String.format(Locale.US, "{\n"
+                        + "  \"rounds\": %d,\n"
+                        + "  \"elements\": %d,\n"
+                        + "  \"fields\": %d,\n"
+                        + "  \"files\": %d,\n"
+                        + "  \"bytes\": %d,\n"
+                        + "  \"millis\": {\n"
+                        + "    \"total\": %.3f,\n"
+                        + "    \"discovery\": %.3f,\n"
+                        + "    \"parse\": %.3f,\n"
+                        + "    \"hierarchy\": %.3f,\n"
+                        + "    \"build\": %.3f,\n"
+                        + "    \"render\": %.3f,\n"
+                        + "    \"write\": %.3f\n"
+                        + "  },\n"
+                        + "  \"outputCache\": {\n"
+                        + "    \"hits\": %d,\n"
+                        + "    \"misses\": %d\n"
+                        + "  },\n"
+                        + "  \"hierarchyCache\": {\n"
+                        + "    \"hits\": %d,\n"
+                        + "    \"misses\": %d\n"
+                        + "  }\n"
+                        + "}\n",
+                rounds, elements, fields, files, bytes,
+                millis(totalNanos), millis(discoveryNanos), millis(parseNanos), millis(hierarchyNanos),
+                millis(buildNanos), millis(renderNanos), millis(writeNanos),
+                cacheHits, cacheMisses,
+                hierarchyHits, hierarchyMisses);
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    /**
+     * the length in UTF-8 without encoding
+     */
+    static long utf8Length(CharSequence content) {
+        long length = 0;
+        for (int i = 0, size = content.length(); i < size; i++) {
+            char c = content.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(content.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
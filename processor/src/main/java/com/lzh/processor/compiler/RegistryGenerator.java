@@ -0,0 +1,189 @@
+package com.lzh.processor.compiler;
+
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.CodeBlock;
+import com.squareup.javapoet.FieldSpec;
+import com.squareup.javapoet.JavaFile;
+import com.squareup.javapoet.MethodSpec;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+import com.squareup.javapoet.TypeSpec;
+import com.squareup.javapoet.WildcardTypeName;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+
+/**
+ * Generate the DispatcherRegistry of a module,it maps the target class and route of every
+ * non-abstract class use @Params to the create method of generated class by switch.
+ * <p>
+ * The registry is enabled by processor option {@link #MODULE_OPTION},the registries of library
+ * modules are listed by option {@link #DEPENDENCIES_OPTION} and merged as delegates.
+ */
+class RegistryGenerator {
+
+    static final String MODULE_OPTION = "processortools.module";
+    static final String DEPENDENCIES_OPTION = "processortools.dependencies";
+
+    private static final ClassName REGISTRY = ClassName.get("com.lzh.processor.runtime", "DispatcherRegistry");
+    private static final String DELEGATES_FIELD = "DELEGATES";
+
+    private final ClassName registryName;
+    private final List<ClassName> dependencies = new ArrayList<>();
+    private final List<Entry> entries = new ArrayList<>();
+    private final Map<String, Entry> routes = new HashMap<>();
+    private boolean written = false;
+
+    /**
+     * @param module qualified name of registry class
+     * @param dependencies qualified names of registries of library modules,split by comma
+     */
+    RegistryGenerator(String module, String dependencies) {
+        this.registryName = ClassName.bestGuess(module);
+        if (dependencies != null) {
+            for (String name : dependencies.split(",")) {
+                if (!name.trim().isEmpty()) {
+                    this.dependencies.add(ClassName.bestGuess(name.trim()));
+                }
+            }
+        }
+    }
+
+    String getQualifiedName() {
+        return registryName.toString();
+    }
+
+    boolean isWritten() {
+        return written;
+    }
+
+    void setWritten() {
+        this.written = true;
+    }
+
+    /**
+     * register a generated class,the abstract class is ignored because it could not be started
+     * @param binaryName the name returned by Class.getName() of target class
+     * @throws IllegalArgumentException if the route is registered by other class
+     */
+    void add(TypeElement element, String binaryName, ClassName generated, String route, boolean isAbstract) {
+        if (isAbstract) {
+            return;
+        }
+        Entry entry = new Entry(element.getQualifiedName().toString(), binaryName, generated, route);
+        if (!route.isEmpty()) {
+            Entry old = routes.put(route, entry);
+            if (old != null) {
+                throw new IllegalArgumentException(String.format("The route %s was defined by %s",
+                        route, old.binaryName));
+            }
+        }
+        entries.add(entry);
+    }
+
+    /**
+     * must be called on javac thread,the annotated classes are looked up again as originating elements
+     */
+    JavaFile generate(Elements elementUtils) {
+        TypeSpec.Builder builder = TypeSpec.classBuilder(registryName.simpleName())
+                .addJavadoc("The registry of generated classes in this module,it is generated by processorTool\n")
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .addSuperinterface(REGISTRY);
+        for (Entry entry : entries) {
+            // the registry depends on all of the annotated classes,it is aggregating
+            TypeElement element = elementUtils.getTypeElement(entry.qualifiedName);
+            if (element != null) {
+                builder.addOriginatingElement(element);
+            }
+        }
+
+        if (!dependencies.isEmpty()) {
+            CodeBlock.Builder init = CodeBlock.builder().add("{");
+            for (int i = 0; i < dependencies.size(); i++) {
+                init.add(i == 0 ? "new $T()" : ", new $T()", dependencies.get(i));
+            }
+            builder.addField(FieldSpec.builder(ArrayTypeName.of(REGISTRY), DELEGATES_FIELD,
+                    Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .addJavadoc("registries of library modules\n")
+                    .initializer(init.add("}").build())
+                    .build());
+        }
+
+        TypeName clazz = ParameterizedTypeName.get(ClassName.get(Class.class), WildcardTypeName.subtypeOf(Object.class));
+        MethodSpec.Builder byClass = createMethod(clazz, "target");
+        if (!entries.isEmpty()) {
+            byClass.beginControlFlow("switch (target.getName())");
+            for (Entry entry : entries) {
+                byClass.addStatement("case $S: return $T.$L()", entry.binaryName, entry.generated,
+                        FileFactory.CREATE_METHOD);
+            }
+            byClass.endControlFlow();
+        }
+        builder.addMethod(delegate(byClass, "target").build());
+
+        MethodSpec.Builder byRoute = createMethod(ClassName.get(String.class), "route");
+        if (!routes.isEmpty()) {
+            byRoute.beginControlFlow("switch (route)");
+            for (Entry entry : entries) {
+                if (!entry.route.isEmpty()) {
+                    byRoute.addStatement("case $S: return $T.$L()", entry.route, entry.generated,
+                            FileFactory.CREATE_METHOD);
+                }
+            }
+            byRoute.endControlFlow();
+        }
+        builder.addMethod(delegate(byRoute, "route").build());
+
+        JavaFile.Builder javaBuilder = JavaFile.builder(registryName.packageName(), builder.build());
+        javaBuilder.addFileComment("The file is auto-generate by processorTool,do not modify!");
+        return javaBuilder.build();
+    }
+
+    private MethodSpec.Builder createMethod(TypeName type, String name) {
+        MethodSpec.Builder builder = MethodSpec.methodBuilder("create")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(Object.class)
+                .addParameter(type, name);
+        return builder.beginControlFlow("if ($L == null)", name)
+                .addStatement("return null")
+                .endControlFlow();
+    }
+
+    /**
+     * find in registries of library modules if it is not registered in this module
+     */
+    private MethodSpec.Builder delegate(MethodSpec.Builder builder, String name) {
+        if (dependencies.isEmpty()) {
+            return builder.addStatement("return null");
+        }
+        return builder.beginControlFlow("for ($T delegate : $L)", REGISTRY, DELEGATES_FIELD)
+                .addStatement("$T result = delegate.create($L)", Object.class, name)
+                .beginControlFlow("if (result != null)")
+                .addStatement("return result")
+                .endControlFlow()
+                .endControlFlow()
+                .addStatement("return null");
+    }
+
+    private static class Entry {
+        final String qualifiedName;
+        final String binaryName;
+        final ClassName generated;
+        final String route;
+
+        Entry(String qualifiedName, String binaryName, ClassName generated, String route) {
+            this.qualifiedName = qualifiedName;
+            this.binaryName = binaryName;
+            this.generated = generated;
+            this.route = route;
+        }
+    }
+}
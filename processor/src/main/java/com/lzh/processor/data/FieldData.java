@@ -1,6 +1,7 @@
 package com.lzh.processor.data;
 
 import com.lzh.processor.annoapi.FieldType;
+import com.lzh.processor.annoapi.Transport;
 import com.squareup.javapoet.TypeName;
 
 /**
@@ -13,6 +14,15 @@ public class FieldData {
     private TypeName type;
     private FieldType fieldType;
     private String defValue;
+    /**
+     * type of field implements android.os.Parcelable
+     */
+    private boolean parcelable;
+    /**
+     * type of field is primitive or implements java.io.Serializable
+     */
+    private boolean serializable;
+    private Transport transport = Transport.value;
 
     public String getDefValue() {
         return defValue;
@@ -54,4 +64,35 @@ public class FieldData {
         this.fieldType = fieldType;
     }
 
+    public boolean isParcelable() {
+        return parcelable;
+    }
+
+    public void setParcelable(boolean parcelable) {
+        this.parcelable = parcelable;
+    }
+
+    public boolean isSerializable() {
+        return serializable;
+    }
+
+    public void setSerializable(boolean serializable) {
+        this.serializable = serializable;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    public void setTransport(Transport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * the value is passed by token of HandoffStore
+     */
+    public boolean isReference() {
+        return transport == Transport.reference;
+    }
+
 }
@@ -0,0 +1,268 @@
+package com.lzh.processor.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reusable, strongly typed accessors created by {@link Reflect#accessor(Class, String)},
+ * {@link Reflect#getter(Class, String)}, {@link Reflect#setter(Class, String)} and
+ * {@link Reflect#creator(Class)}.
+ * <p>
+ * An accessor resolves its member once. Public members of public classes that
+ * are visible from the class loader of {@link Reflect} are bound by
+ * <code>LambdaMetafactory</code>, so an invocation is as cheap as a direct
+ * call and can be inlined by the JIT. Other members, such as fields, static or
+ * void methods, or members of non-public classes, are bound to a cached
+ * {@link MethodHandle} of the exact arity, which does not allocate either.
+ * <p>
+ * Accessors are thread safe and meant to be kept in static final fields.
+ * Exceptions thrown by the member are propagated unchanged.
+ */
+public final class Accessors {
+
+    private Accessors() {}
+
+    public interface Creator<T> {
+        T create();
+    }
+
+    public interface Getter<T, V> {
+        V get(T target);
+    }
+
+    public interface Setter<T, V> {
+        void set(T target, V value);
+    }
+
+    public interface Invoker0<T, R> {
+        R invoke(T target);
+    }
+
+    public interface Invoker1<T, A, R> {
+        R invoke(T target, A a);
+    }
+
+    public interface Invoker2<T, A, B, R> {
+        R invoke(T target, A a, B b);
+    }
+
+    public interface Invoker3<T, A, B, C, R> {
+        R invoke(T target, A a, B b, C c);
+    }
+
+    // ---------------------------------------------------------------------
+    // Factories used by Reflect
+    // ---------------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    static <T> Creator<T> creator(Class<T> type) throws ReflectException {
+        Constructor<T> constructor;
+        try {
+            constructor = Reflect.accessible(type.getDeclaredConstructor());
+        }
+        catch (NoSuchMethodException e) {
+            throw new ReflectException(e);
+        }
+
+        MethodHandle handle = unreflect(constructor);
+        Creator<T> creator = LambdaSpinner.spin(Creator.class, "create", constructor, handle,
+                MethodType.methodType(type));
+        return creator != null ? creator : new HandleAccessor<T, Object, Object, Object, Object>(generic(handle, 0));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T, V> Getter<T, V> getter(Class<T> type, String property) throws ReflectException {
+        Method method = beanMethod(type, "get", property, 0);
+        if (method == null) {
+            method = beanMethod(type, "is", property, 0);
+        }
+
+        if (method != null && method.getReturnType() != void.class) {
+            MethodHandle handle = unreflect(method);
+            Getter<T, V> getter = LambdaSpinner.spin(Getter.class, "get", method, handle,
+                    MethodType.methodType(Reflect.wrapper(method.getReturnType()), type));
+            return getter != null ? getter : new HandleAccessor<T, V, Object, Object, V>(generic(handle, 1));
+        }
+
+        Field field = Reflect.on(type).field0(property);
+        MethodHandle handle = Invokers.getter(field);
+        if (handle == null) {
+            throw new ReflectException("Can not read field " + field);
+        }
+        return new HandleAccessor<T, V, Object, Object, V>(handle);
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T, V> Setter<T, V> setter(Class<T> type, String property) throws ReflectException {
+        Method method = beanMethod(type, "set", property, 1);
+
+        if (method != null) {
+            MethodHandle handle = unreflect(method);
+            Setter<T, V> setter = LambdaSpinner.spin(Setter.class, "set", method, handle,
+                    MethodType.methodType(void.class, type, Reflect.wrapper(method.getParameterTypes()[0])));
+            return setter != null ? setter : new HandleAccessor<T, V, Object, Object, Object>(generic(handle, 2));
+        }
+
+        Field field = Reflect.on(type).field0(property);
+        MethodHandle handle = Invokers.setter(field);
+        if (handle == null) {
+            throw new ReflectException("Can not write field " + field);
+        }
+        return new HandleAccessor<T, V, Object, Object, Object>(handle.asType(MethodType.genericMethodType(2)));
+    }
+
+    @SuppressWarnings("unchecked")
+    static <T> Object invoker(Class<T> type, String name, Class<?>... types) throws ReflectException {
+        Method method = Reflect.method(type, name, types);
+        MethodHandle handle = unreflect(method);
+        int count = types.length;
+
+        if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class) {
+            Class<?>[] parameters = new Class<?>[count + 1];
+            parameters[0] = type;
+            for (int i = 0; i < count; i++) {
+                parameters[i + 1] = Reflect.wrapper(method.getParameterTypes()[i]);
+            }
+            MethodType instantiated = MethodType.methodType(Reflect.wrapper(method.getReturnType()), parameters);
+
+            Object invoker = LambdaSpinner.spin(INVOKERS[count], "invoke", method, handle, instantiated);
+            if (invoker != null) {
+                return invoker;
+            }
+        }
+
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        return new HandleAccessor<Object, Object, Object, Object, Object>(generic(handle, count + 1));
+    }
+
+    private static final Class<?>[] INVOKERS = {
+        Invoker0.class, Invoker1.class, Invoker2.class, Invoker3.class
+    };
+
+    /**
+     * Find a public bean method like getName() or setName(value) in class hierarchy
+     */
+    private static Method beanMethod(Class<?> type, String prefix, String property, int count) {
+        String name = prefix + Character.toUpperCase(property.charAt(0)) + property.substring(1);
+
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == count
+                    && !Modifier.isStatic(method.getModifiers())) {
+                return method;
+            }
+        }
+
+        return null;
+    }
+
+    private static MethodHandle unreflect(Member member) throws ReflectException {
+        try {
+            if (member instanceof Method) {
+                return LambdaSpinner.LOOKUP.unreflect(Reflect.accessible((Method) member)).asFixedArity();
+            }
+            else {
+                return LambdaSpinner.LOOKUP.unreflectConstructor(Reflect.accessible((Constructor<?>) member)).asFixedArity();
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    private static MethodHandle generic(MethodHandle handle, int count) {
+        return handle.asType(MethodType.genericMethodType(count));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends Throwable> RuntimeException sneakyThrow(Throwable e) throws E {
+        throw (E) e;
+    }
+
+    /**
+     * An accessor bound to a {@link MethodHandle} of the generic type with the
+     * exact arity, used when an accessor can not be spun.
+     */
+    @SuppressWarnings("unchecked")
+    private static final class HandleAccessor<T, A, B, C, R> implements Creator<T>, Getter<T, R>, Setter<T, A>,
+            Invoker0<T, R>, Invoker1<T, A, R>, Invoker2<T, A, B, R>, Invoker3<T, A, B, C, R> {
+
+        private final MethodHandle handle;
+
+        HandleAccessor(MethodHandle handle) {
+            this.handle = handle;
+        }
+
+        @Override
+        public T create() {
+            try {
+                return (T) (Object) handle.invokeExact();
+            }
+            catch (Throwable e) {
+                throw Accessors.<RuntimeException>sneakyThrow(e);
+            }
+        }
+
+        @Override
+        public R get(T target) {
+            return invoke(target);
+        }
+
+        @Override
+        public void set(T target, A value) {
+            try {
+                Object ignore = (Object) handle.invokeExact((Object) target, (Object) value);
+            }
+            catch (Throwable e) {
+                throw Accessors.<RuntimeException>sneakyThrow(e);
+            }
+        }
+
+        @Override
+        public R invoke(T target) {
+            try {
+                return (R) (Object) handle.invokeExact((Object) target);
+            }
+            catch (Throwable e) {
+                throw Accessors.<RuntimeException>sneakyThrow(e);
+            }
+        }
+
+        @Override
+        public R invoke(T target, A a) {
+            try {
+                return (R) (Object) handle.invokeExact((Object) target, (Object) a);
+            }
+            catch (Throwable e) {
+                throw Accessors.<RuntimeException>sneakyThrow(e);
+            }
+        }
+
+        @Override
+        public R invoke(T target, A a, B b) {
+            try {
+                return (R) (Object) handle.invokeExact((Object) target, (Object) a, (Object) b);
+            }
+            catch (Throwable e) {
+                throw Accessors.<RuntimeException>sneakyThrow(e);
+            }
+        }
+
+        @Override
+        public R invoke(T target, A a, B b, C c) {
+            try {
+                return (R) (Object) handle.invokeExact((Object) target, (Object) a, (Object) b, (Object) c);
+            }
+            catch (Throwable e) {
+                throw Accessors.<RuntimeException>sneakyThrow(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.lzh.processor.reflect;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * {@link MethodHandle} based invocation of the members resolved by
+ * {@link Reflect}, used in {@link Reflect.InvokeMode#METHOD_HANDLE}.
+ * <p>
+ * Every member is converted once into a handle of a fixed generic shape, and
+ * the handle is cached on the declaring class:
+ * <ul>
+ * <li>methods: <code>(Object target, Object a, ...)Object</code>, and
+ * <code>(Object target, Object[] args)Object</code></li>
+ * <li>constructors: <code>(Object a, ...)Object</code>, and
+ * <code>(Object[] args)Object</code></li>
+ * <li>field getters: <code>(Object target)Object</code></li>
+ * <li>field setters: <code>(Object target, Object value)void</code></li>
+ * </ul>
+ * Static members ignore the target. Members that can not be converted, such
+ * as static final fields, are cached as unsupported and are invoked by
+ * reflection.
+ */
+final class Invokers {
+
+    private static final Object UNSUPPORTED = new Object();
+    private static final Object[] NO_ARGS = {};
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final ClassValue<Handles> CACHE = new ClassValue<Handles>() {
+        @Override
+        protected Handles computeValue(Class<?> type) {
+            return new Handles();
+        }
+    };
+
+    private Invokers() {}
+
+    static Handle method(Method method) {
+        ConcurrentMap<Member, Object> cache = CACHE.get(method.getDeclaringClass()).methods;
+        Object handle = cache.get(method);
+
+        if (handle == null) {
+            try {
+                MethodHandle result = LOOKUP.unreflect(method).asFixedArity();
+                if (Modifier.isStatic(method.getModifiers())) {
+                    result = MethodHandles.dropArguments(result, 0, Object.class);
+                }
+
+                int count = method.getParameterTypes().length;
+                handle = new Handle(result.asType(MethodType.genericMethodType(count + 1)), count);
+            }
+            catch (IllegalAccessException e) {
+                handle = UNSUPPORTED;
+            }
+
+            cache.put(method, handle);
+        }
+
+        return handle == UNSUPPORTED ? null : (Handle) handle;
+    }
+
+    static Handle constructor(Constructor<?> constructor) {
+        ConcurrentMap<Member, Object> cache = CACHE.get(constructor.getDeclaringClass()).constructors;
+        Object handle = cache.get(constructor);
+
+        if (handle == null) {
+            try {
+                int count = constructor.getParameterTypes().length;
+                MethodHandle result = LOOKUP.unreflectConstructor(constructor).asFixedArity();
+                handle = new Handle(result.asType(MethodType.genericMethodType(count)), count);
+            }
+            catch (IllegalAccessException e) {
+                handle = UNSUPPORTED;
+            }
+
+            cache.put(constructor, handle);
+        }
+
+        return handle == UNSUPPORTED ? null : (Handle) handle;
+    }
+
+    static MethodHandle getter(Field field) {
+        ConcurrentMap<Member, Object> cache = CACHE.get(field.getDeclaringClass()).getters;
+        Object handle = cache.get(field);
+
+        if (handle == null) {
+            try {
+                MethodHandle result = LOOKUP.unreflectGetter(field);
+                if (Modifier.isStatic(field.getModifiers())) {
+                    result = MethodHandles.dropArguments(result, 0, Object.class);
+                }
+
+                handle = result.asType(MethodType.methodType(Object.class, Object.class));
+            }
+            catch (IllegalAccessException e) {
+                handle = UNSUPPORTED;
+            }
+
+            cache.put(field, handle);
+        }
+
+        return handle == UNSUPPORTED ? null : (MethodHandle) handle;
+    }
+
+    static MethodHandle setter(Field field) {
+        ConcurrentMap<Member, Object> cache = CACHE.get(field.getDeclaringClass()).setters;
+        Object handle = cache.get(field);
+
+        if (handle == null) {
+            try {
+                MethodHandle result = LOOKUP.unreflectSetter(field);
+                if (Modifier.isStatic(field.getModifiers())) {
+                    result = MethodHandles.dropArguments(result, 0, Object.class);
+                }
+
+                handle = result.asType(MethodType.methodType(void.class, Object.class, Object.class));
+            }
+            catch (IllegalAccessException e) {
+                handle = UNSUPPORTED;
+            }
+
+            cache.put(field, handle);
+        }
+
+        return handle == UNSUPPORTED ? null : (MethodHandle) handle;
+    }
+
+    /**
+     * Invoke a method handle, wrapping any exception like {@link Method#invoke(Object, Object...)}
+     */
+    static Object invokeMethod(Handle handle, Object target, Object[] args) throws InvocationTargetException {
+        Object[] values = args == null ? NO_ARGS : args;
+
+        try {
+            return (Object) handle.spread.invokeExact(target, values);
+        }
+        catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Invoke a method handle with up to two arguments, without allocating an argument array
+     */
+    static Object invokeMethod(Handle handle, Object target, int count, Object a, Object b) throws InvocationTargetException {
+        try {
+            switch (count) {
+                case 0:
+                    return (Object) handle.exact.invokeExact(target);
+                case 1:
+                    return (Object) handle.exact.invokeExact(target, a);
+                default:
+                    return (Object) handle.exact.invokeExact(target, a, b);
+            }
+        }
+        catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    static Object invokeConstructor(Handle handle, Object[] args) throws InvocationTargetException {
+        Object[] values = args == null ? NO_ARGS : args;
+
+        try {
+            return (Object) handle.spread.invokeExact(values);
+        }
+        catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Invoke a constructor handle without arguments
+     */
+    static Object invokeConstructor(Handle handle) throws InvocationTargetException {
+        try {
+            return (Object) handle.exact.invokeExact();
+        }
+        catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    static Object get(MethodHandle handle, Object target) throws InvocationTargetException {
+        try {
+            return (Object) handle.invokeExact(target);
+        }
+        catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    static void set(MethodHandle handle, Object target, Object value) throws InvocationTargetException {
+        try {
+            handle.invokeExact(target, value);
+        }
+        catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * The handles of a method or constructor
+     */
+    static final class Handle {
+
+        /**
+         * The handle of the generic type with the exact arity of the member,
+         * including the target of a method
+         */
+        final MethodHandle exact;
+
+        /**
+         * The handle taking the arguments as an array
+         */
+        final MethodHandle spread;
+
+        Handle(MethodHandle exact, int count) {
+            this.exact = exact;
+            this.spread = exact.asSpreader(Object[].class, count);
+        }
+    }
+
+    /**
+     * The cached handles of one declaring class
+     */
+    private static final class Handles {
+        final ConcurrentMap<Member, Object> methods = new ConcurrentHashMap<Member, Object>();
+        final ConcurrentMap<Member, Object> constructors = new ConcurrentHashMap<Member, Object>();
+        final ConcurrentMap<Member, Object> getters = new ConcurrentHashMap<Member, Object>();
+        final ConcurrentMap<Member, Object> setters = new ConcurrentHashMap<Member, Object>();
+    }
+}
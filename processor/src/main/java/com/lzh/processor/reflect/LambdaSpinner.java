@@ -0,0 +1,104 @@
+package com.lzh.processor.reflect;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Member;
+import java.lang.reflect.Modifier;
+
+/**
+ * Spin implementations of the functional interfaces in {@link Accessors} by
+ * <code>LambdaMetafactory</code>, just like javac does for method references.
+ * <p>
+ * The spun class is defined in the class loader of this class and calls the
+ * member directly, so only public members of public classes are spun, and
+ * only if all types of the signature are visible from this class loader.
+ * <code>null</code> is returned in any other case, and on runtimes without
+ * <code>LambdaMetafactory</code>, then {@link Accessors} falls back to the
+ * method handle invokers.
+ * <p>
+ * <code>LambdaMetafactory</code> is looked up reflectively, so this module
+ * still compiles and runs on Java 7.
+ */
+final class LambdaSpinner {
+
+    static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    /**
+     * <code>LambdaMetafactory.metafactory</code>, or <code>null</code> if the
+     * runtime does not have it
+     */
+    private static final MethodHandle METAFACTORY = metafactory();
+
+    private LambdaSpinner() {}
+
+    /**
+     * @param functionType The functional interface to implement
+     * @param methodName The name of the single abstract method
+     * @param member The member to be invoked
+     * @param handle The direct method handle of the member
+     * @param instantiated The type of the abstract method after the type
+     *            parameters are applied, using wrappers for primitive types
+     */
+    @SuppressWarnings("unchecked")
+    static <F> F spin(Class<?> functionType, String methodName, Member member, MethodHandle handle, MethodType instantiated) {
+        if (METAFACTORY == null || !isAccessible(member, instantiated)) {
+            return null;
+        }
+
+        try {
+            CallSite site = (CallSite) METAFACTORY.invokeExact(LOOKUP, methodName, MethodType.methodType(functionType),
+                    instantiated.erase(), handle, instantiated);
+            return (F) site.getTarget().invoke();
+        }
+
+        // Includes LambdaConversionException and LinkageErrors
+        catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle metafactory() {
+        try {
+            Class<?> factory = Class.forName("java.lang.invoke.LambdaMetafactory");
+            return LOOKUP.findStatic(factory, "metafactory", MethodType.methodType(CallSite.class,
+                    MethodHandles.Lookup.class, String.class, MethodType.class, MethodType.class,
+                    MethodHandle.class, MethodType.class));
+        }
+        catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static boolean isAccessible(Member member, MethodType instantiated) {
+        if (!Modifier.isPublic(member.getModifiers()) || !Modifier.isPublic(member.getDeclaringClass().getModifiers())) {
+            return false;
+        }
+
+        if (!isVisible(member.getDeclaringClass()) || !isVisible(instantiated.returnType())) {
+            return false;
+        }
+
+        for (Class<?> type : instantiated.parameterArray()) {
+            if (!isVisible(type)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static boolean isVisible(Class<?> type) {
+        if (type.isPrimitive()) {
+            return true;
+        }
+
+        try {
+            return Class.forName(type.getName(), false, LambdaSpinner.class.getClassLoader()) == type;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
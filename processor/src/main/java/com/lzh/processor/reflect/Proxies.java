@@ -0,0 +1,255 @@
+package com.lzh.processor.reflect;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The proxies created by {@link Reflect#as(Class)}.
+ * <p>
+ * The proxy constructor is cached per interface, and a dispatch table is
+ * cached per interface and target class. The table resolves every interface
+ * method once:
+ * <ul>
+ * <li>a target method is bound if it is the only overload of that name and
+ * arity, and it accepts the declared parameter types</li>
+ * <li>getters and setters of a {@link Map} target without such a method are
+ * bound to the precomputed property name</li>
+ * <li>anything else is called by name with the actual arguments, like before</li>
+ * </ul>
+ * Bound methods are invoked through the cached handles of {@link Invokers}.
+ */
+final class Proxies {
+
+    private static final ClassValue<Template> TEMPLATES = new ClassValue<Template>() {
+        @Override
+        protected Template computeValue(Class<?> proxyType) {
+            return new Template(proxyType);
+        }
+    };
+
+    private Proxies() {}
+
+    @SuppressWarnings("unchecked")
+    static <P> P create(Class<P> proxyType, Object target) {
+        Template template = TEMPLATES.get(proxyType);
+
+        try {
+            return (P) template.constructor.newInstance(new Handler(template.table(target.getClass()), target));
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * The proxy class of an interface and its dispatch tables
+     */
+    private static final class Template {
+        final Class<?> proxyType;
+        final Constructor<?> constructor;
+        final ConcurrentMap<Class<?>, Map<Method, Dispatch>> tables = new ConcurrentHashMap<Class<?>, Map<Method, Dispatch>>();
+
+        Template(Class<?> proxyType) {
+            this.proxyType = proxyType;
+
+            try {
+                Class<?> proxyClass = Proxy.getProxyClass(proxyType.getClassLoader(), proxyType);
+                this.constructor = proxyClass.getConstructor(InvocationHandler.class);
+            }
+            catch (NoSuchMethodException e) {
+                throw new ReflectException(e);
+            }
+        }
+
+        Map<Method, Dispatch> table(Class<?> targetType) {
+            Map<Method, Dispatch> table = tables.get(targetType);
+
+            if (table == null) {
+                table = new HashMap<Method, Dispatch>();
+                for (Method method : proxyType.getMethods()) {
+                    table.put(method, dispatch(targetType, method));
+                }
+                for (String name : new String[] { "hashCode", "equals", "toString" }) {
+                    Method method = objectMethod(name);
+                    table.put(method, dispatch(targetType, method));
+                }
+
+                tables.putIfAbsent(targetType, table);
+            }
+
+            return table;
+        }
+    }
+
+    /**
+     * Resolve how to dispatch an interface method on a target class
+     */
+    private static Dispatch dispatch(Class<?> targetType, Method method) {
+        String name = method.getName();
+        Class<?>[] types = method.getParameterTypes();
+
+        int overloads = overloads(targetType, name, types.length);
+
+        if (overloads == 1) {
+            try {
+                Method target = Reflect.accessible(Reflect.method(targetType, name, types));
+                return new Dispatch(Dispatch.METHOD, target, Invokers.method(target), null);
+            }
+            catch (ReflectException ignore) {}
+        }
+        else if (overloads == 0 && Map.class.isAssignableFrom(targetType)) {
+
+            // [#14] Emulate POJO behaviour on wrapped map objects
+            if (types.length == 0 && name.startsWith("get")) {
+                return new Dispatch(Dispatch.MAP_GET, null, null, property(name.substring(3)));
+            }
+            else if (types.length == 0 && name.startsWith("is")) {
+                return new Dispatch(Dispatch.MAP_GET, null, null, property(name.substring(2)));
+            }
+            else if (types.length == 1 && name.startsWith("set")) {
+                return new Dispatch(Dispatch.MAP_PUT, null, null, property(name.substring(3)));
+            }
+        }
+
+        return new Dispatch(Dispatch.CALL, null, null, name);
+    }
+
+    /**
+     * Count the methods of a name and arity with distinct parameter types in
+     * the class hierarchy, as they are seen by {@link Reflect#call(String, Object...)}
+     */
+    private static int overloads(Class<?> type, String name, int count) {
+        Set<List<Class<?>>> signatures = new HashSet<List<Class<?>>>();
+
+        for (Method method : type.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterTypes().length == count) {
+                signatures.add(Arrays.<Class<?>>asList(method.getParameterTypes()));
+            }
+        }
+
+        Class<?> t = type;
+        do {
+            for (Method method : t.getDeclaredMethods()) {
+                if (method.getName().equals(name) && method.getParameterTypes().length == count) {
+                    signatures.add(Arrays.<Class<?>>asList(method.getParameterTypes()));
+                }
+            }
+
+            t = t.getSuperclass();
+        }
+        while (t != null);
+
+        return signatures.size();
+    }
+
+    private static Method objectMethod(String name) {
+        try {
+            return "equals".equals(name) ? Object.class.getMethod(name, Object.class) : Object.class.getMethod(name);
+        }
+        catch (NoSuchMethodException e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Get the POJO property name of an getter/setter
+     */
+    private static String property(String string) {
+        int length = string.length();
+
+        if (length == 0) {
+            return "";
+        }
+        else if (length == 1) {
+            return string.toLowerCase();
+        }
+        else {
+            return string.substring(0, 1).toLowerCase() + string.substring(1);
+        }
+    }
+
+    /**
+     * How to dispatch one interface method
+     */
+    private static final class Dispatch {
+        static final int METHOD = 0;
+        static final int MAP_GET = 1;
+        static final int MAP_PUT = 2;
+        static final int CALL = 3;
+
+        final int kind;
+        final Method method;
+        final Invokers.Handle handle;
+        final boolean isVoid;
+
+        /**
+         * The property of a map getter/setter, or the method name of a call
+         */
+        final String name;
+
+        Dispatch(int kind, Method method, Invokers.Handle handle, String name) {
+            this.kind = kind;
+            this.method = method;
+            this.handle = handle;
+            this.isVoid = method != null && method.getReturnType() == void.class;
+            this.name = name;
+        }
+    }
+
+    private static final class Handler implements InvocationHandler {
+        private final Map<Method, Dispatch> table;
+        private final Object target;
+
+        Handler(Map<Method, Dispatch> table, Object target) {
+            this.table = table;
+            this.target = target;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Dispatch dispatch = table.get(method);
+
+            if (dispatch == null) {
+                return Reflect.on(target).call(method.getName(), args).get();
+            }
+
+            switch (dispatch.kind) {
+                case Dispatch.METHOD:
+                    try {
+                        Object result = dispatch.handle != null
+                                ? Invokers.invokeMethod(dispatch.handle, target, args)
+                                : dispatch.method.invoke(target, args);
+                        return dispatch.isVoid ? target : result;
+                    }
+                    catch (InvocationTargetException e) {
+                        throw new ReflectException(e);
+                    }
+                    catch (IllegalAccessException e) {
+                        throw new ReflectException(e);
+                    }
+
+                case Dispatch.MAP_GET:
+                    return ((Map<String, Object>) target).get(dispatch.name);
+
+                case Dispatch.MAP_PUT:
+                    ((Map<String, Object>) target).put(dispatch.name, args[0]);
+                    return null;
+
+                default:
+                    return Reflect.on(target).call(dispatch.name, args).get();
+            }
+        }
+    }
+}
@@ -35,14 +35,13 @@
  */
 package com.lzh.processor.reflect;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
-import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.lang.reflect.Proxy;
 import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
@@ -162,10 +161,143 @@ public class Reflect {
         return accessible;
     }
 
+    /**
+     * Create a reusable accessor of a method without parameters.
+     * <p>
+     * The method is resolved once by the same rules as
+     * {@link #call(String, Object...)}. See {@link Accessors} for how the
+     * accessor is bound.
+     *
+     * @param type The class declaring or inheriting the method
+     * @param name The method name
+     * @return An accessor to be kept and invoked repeatedly
+     * @throws ReflectException If the method could not be found
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, R> Accessors.Invoker0<T, R> accessor(Class<T> type, String name) throws ReflectException {
+        return (Accessors.Invoker0<T, R>) Accessors.invoker(type, name);
+    }
+
+    /**
+     * Create a reusable accessor of a method with one parameter.
+     *
+     * @see #accessor(Class, String)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, A, R> Accessors.Invoker1<T, A, R> accessor(Class<T> type, String name, Class<A> a) throws ReflectException {
+        return (Accessors.Invoker1<T, A, R>) Accessors.invoker(type, name, a);
+    }
+
+    /**
+     * Create a reusable accessor of a method with two parameters.
+     *
+     * @see #accessor(Class, String)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, A, B, R> Accessors.Invoker2<T, A, B, R> accessor(Class<T> type, String name, Class<A> a, Class<B> b) throws ReflectException {
+        return (Accessors.Invoker2<T, A, B, R>) Accessors.invoker(type, name, a, b);
+    }
+
+    /**
+     * Create a reusable accessor of a method with three parameters.
+     *
+     * @see #accessor(Class, String)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T, A, B, C, R> Accessors.Invoker3<T, A, B, C, R> accessor(Class<T> type, String name, Class<A> a, Class<B> b, Class<C> c) throws ReflectException {
+        return (Accessors.Invoker3<T, A, B, C, R>) Accessors.invoker(type, name, a, b, c);
+    }
+
+    /**
+     * Create a reusable getter of a property, using the public
+     * <code>getXxx()</code> or <code>isXxx()</code> method if there is one,
+     * or else the field.
+     *
+     * @see #accessor(Class, String)
+     */
+    public static <T, V> Accessors.Getter<T, V> getter(Class<T> type, String property) throws ReflectException {
+        return Accessors.getter(type, property);
+    }
+
+    /**
+     * Create a reusable setter of a property, using the public
+     * <code>setXxx(value)</code> method if there is one, or else the field.
+     *
+     * @see #accessor(Class, String)
+     */
+    public static <T, V> Accessors.Setter<T, V> setter(Class<T> type, String property) throws ReflectException {
+        return Accessors.setter(type, property);
+    }
+
+    /**
+     * Create a reusable creator calling the constructor without parameters.
+     *
+     * @see #accessor(Class, String)
+     */
+    public static <T> Accessors.Creator<T> creator(Class<T> type) throws ReflectException {
+        return Accessors.creator(type);
+    }
+
+    /**
+     * Set the way resolved members are invoked by all {@link Reflect}
+     * instances.
+     * <p>
+     * Members are always resolved by the same rules, this only changes how
+     * the resolved member is invoked.
+     *
+     * @param mode The invocation mode, {@link InvokeMode#REFLECTION} by default
+     */
+    public static void setInvokeMode(InvokeMode mode) {
+        invokeMode = mode == null ? InvokeMode.REFLECTION : mode;
+    }
+
+    /**
+     * Get the way resolved members are invoked
+     */
+    public static InvokeMode getInvokeMode() {
+        return invokeMode;
+    }
+
+    /**
+     * The way resolved members are invoked
+     */
+    public enum InvokeMode {
+
+        /**
+         * Use {@link Method#invoke(Object, Object...)},
+         * {@link Constructor#newInstance(Object...)} and {@link Field}
+         * accessors
+         */
+        REFLECTION,
+
+        /**
+         * Convert every resolved member once into a cached
+         * {@link MethodHandle}, so repeated invocations avoid the reflective
+         * checks. Members that can not be converted are still invoked by
+         * reflection.
+         */
+        METHOD_HANDLE
+    }
+
     // ---------------------------------------------------------------------
     // Members
     // ---------------------------------------------------------------------
 
+    /**
+     * The way resolved members are invoked
+     */
+    private static volatile InvokeMode invokeMode = InvokeMode.REFLECTION;
+
+    /**
+     * Argument types of a call without arguments
+     */
+    private static final Class<?>[] NO_TYPES = {};
+
+    /**
+     * Arguments of a call without arguments
+     */
+    private static final Object[] NO_ARGS = {};
+
     /**
      * The wrapped object
      */
@@ -222,7 +354,14 @@ public class Reflect {
     public Reflect set(String name, Object value) throws ReflectException {
         try {
             Field field = field0(name);
-            field.set(object, unwrap(value));
+            MethodHandle handle = invokeMode == InvokeMode.METHOD_HANDLE ? Invokers.setter(field) : null;
+
+            if (handle != null) {
+                Invokers.set(handle, object, unwrap(value));
+            }
+            else {
+                field.set(object, unwrap(value));
+            }
             return this;
         }
         catch (Exception e) {
@@ -265,16 +404,50 @@ public class Reflect {
     public Reflect field(String name) throws ReflectException {
         try {
             Field field = field0(name);
-            return on(field.get(object));
+            MethodHandle handle = invokeMode == InvokeMode.METHOD_HANDLE ? Invokers.getter(field) : null;
+
+            if (handle != null) {
+                return on(Invokers.get(handle, object));
+            }
+            else {
+                return on(field.get(object));
+            }
         }
         catch (Exception e) {
             throw new ReflectException(e);
         }
     }
 
-    private Field field0(String name) throws ReflectException {
+    Field field0(String name) throws ReflectException {
         Class<?> type = type();
 
+        if (!ReflectCache.isEnabled()) {
+            return field0(type, name);
+        }
+
+        ReflectCache.Signatures signatures = ReflectCache.of(type).fields(name);
+        Object member = signatures.find(NO_TYPES);
+
+        if (member == null) {
+            try {
+                member = field0(type, name);
+            }
+            catch (ReflectException e) {
+                member = ReflectCache.NOT_FOUND;
+            }
+
+            signatures.put(NO_TYPES, member);
+        }
+
+        if (member == ReflectCache.NOT_FOUND) {
+            throw new ReflectException(new NoSuchFieldException(name));
+        }
+
+        return (Field) member;
+    }
+
+    private static Field field0(Class<?> type, String name) throws ReflectException {
+
         // Try getting a public field
         try {
             return type.getField(name);
@@ -336,7 +509,9 @@ public class Reflect {
      * Call a method by its name.
      * <p>
      * This is a convenience method for calling
-     * <code>call(name, new Object[0])</code>
+     * <code>call(name, new Object[0])</code>. Once the method is cached, it
+     * does not allocate anything but the result wrapper in
+     * {@link InvokeMode#METHOD_HANDLE}.
      *
      * @param name The method name
      * @return The wrapped method result or the same wrapped object if the
@@ -346,7 +521,86 @@ public class Reflect {
      * @see #call(String, Object...)
      */
     public Reflect call(String name) throws ReflectException {
-        return call(name, new Object[0]);
+        Method method = cachedMethod(name, 0, null, null);
+
+        if (method == null) {
+            return call(name, NO_ARGS);
+        }
+
+        return on(method, object, 0, null, null);
+    }
+
+    /**
+     * Call a method by its name with one argument.
+     * <p>
+     * This is the same as <code>call(name, new Object[] { arg })</code>, but
+     * once the method is cached, it does not allocate anything but the result
+     * wrapper in {@link InvokeMode#METHOD_HANDLE}.
+     *
+     * @param name The method name
+     * @param arg The method argument
+     * @return The wrapped method result or the same wrapped object if the
+     *         method returns <code>void</code>, to be used for further
+     *         reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #call(String, Object...)
+     */
+    public Reflect call(String name, Object arg) throws ReflectException {
+        Method method = cachedMethod(name, 1, type(arg), null);
+
+        if (method == null) {
+            return call(name, new Object[] { arg });
+        }
+
+        return on(method, object, 1, arg, null);
+    }
+
+    /**
+     * Call a method by its name with two arguments.
+     * <p>
+     * This is the same as <code>call(name, new Object[] { arg1, arg2 })</code>,
+     * but once the method is cached, it does not allocate anything but the
+     * result wrapper in {@link InvokeMode#METHOD_HANDLE}.
+     *
+     * @param name The method name
+     * @param arg1 The first method argument
+     * @param arg2 The second method argument
+     * @return The wrapped method result or the same wrapped object if the
+     *         method returns <code>void</code>, to be used for further
+     *         reflection.
+     * @throws ReflectException If any reflection exception occurred.
+     * @see #call(String, Object...)
+     */
+    public Reflect call(String name, Object arg1, Object arg2) throws ReflectException {
+        Method method = cachedMethod(name, 2, type(arg1), type(arg2));
+
+        if (method == null) {
+            return call(name, new Object[] { arg1, arg2 });
+        }
+
+        return on(method, object, 2, arg1, arg2);
+    }
+
+    /**
+     * Find a method in the cache without allocating, trying the exact
+     * signature first and a similar one next.
+     *
+     * @return The cached method, or <code>null</code> if the cache does not
+     *         know a matching method yet.
+     */
+    private Method cachedMethod(String name, int count, Class<?> a, Class<?> b) {
+        if (!ReflectCache.isEnabled()) {
+            return null;
+        }
+
+        ReflectCache.Members members = ReflectCache.of(type());
+        Object member = members.exactMethods(name).find(count, a, b);
+
+        if (member == ReflectCache.NOT_FOUND) {
+            member = members.similarMethods(name).find(count, a, b);
+        }
+
+        return member instanceof Method ? (Method) member : null;
     }
 
     /**
@@ -418,6 +672,33 @@ public class Reflect {
     private Method exactMethod(String name, Class<?>[] types) throws NoSuchMethodException {
         Class<?> type = type();
 
+        if (!ReflectCache.isEnabled()) {
+            return exactMethod(type, name, types);
+        }
+
+        ReflectCache.Signatures signatures = ReflectCache.of(type).exactMethods(name);
+        Object member = signatures.find(types);
+
+        if (member == null) {
+            try {
+                member = exactMethod(type, name, types);
+            }
+            catch (NoSuchMethodException e) {
+                member = ReflectCache.NOT_FOUND;
+            }
+
+            signatures.put(types, member);
+        }
+
+        if (member == ReflectCache.NOT_FOUND) {
+            throw new NoSuchMethodException();
+        }
+
+        return (Method) member;
+    }
+
+    private static Method exactMethod(Class<?> type, String name, Class<?>[] types) throws NoSuchMethodException {
+
         // first priority: find a public method with exact signature match in class hierarchy
         try {
             return type.getMethod(name, types);
@@ -450,6 +731,34 @@ public class Reflect {
     private Method similarMethod(String name, Class<?>[] types) throws NoSuchMethodException {
         Class<?> type = type();
 
+        if (!ReflectCache.isEnabled()) {
+            return similarMethod(type, name, types);
+        }
+
+        ReflectCache.Signatures signatures = ReflectCache.of(type).similarMethods(name);
+        Object member = signatures.find(types);
+
+        if (member == null) {
+            try {
+                member = similarMethod(type, name, types);
+            }
+            catch (NoSuchMethodException e) {
+                member = ReflectCache.NOT_FOUND;
+            }
+
+            signatures.put(types, member);
+        }
+
+        if (member == ReflectCache.NOT_FOUND) {
+            throw new NoSuchMethodException("No similar method " + name + " with params " + Arrays.toString(types) + " could be found on type " + type + ".");
+        }
+
+        return (Method) member;
+    }
+
+    private static Method similarMethod(Class<?> type, String name, Class<?>[] types) throws NoSuchMethodException {
+        Class<?> declaring = type;
+
         // first priority: find a public method with a "similar" signature in class hierarchy
         // similar interpreted in when primitive argument types are converted to their wrappers
         for (Method method : type.getMethods()) {
@@ -460,24 +769,44 @@ public class Reflect {
 
         // second priority: find a non-public method with a "similar" signature on declaring class
         do {
-            for (Method method : type.getDeclaredMethods()) {
+            for (Method method : declaring.getDeclaredMethods()) {
                 if (isSimilarSignature(method, name, types)) {
                     return method;
                 }
             }
 
-            type = type.getSuperclass();
+            declaring = declaring.getSuperclass();
         }
-        while (type != null);
+        while (declaring != null);
+
+        throw new NoSuchMethodException("No similar method " + name + " with params " + Arrays.toString(types) + " could be found on type " + type + ".");
+    }
 
-        throw new NoSuchMethodException("No similar method " + name + " with params " + Arrays.toString(types) + " could be found on type " + type() + ".");
+    /**
+     * Resolve a method of a class by the same rules as
+     * {@link #call(String, Object...)}, using declared argument types.
+     */
+    static Method method(Class<?> type, String name, Class<?>... types) throws ReflectException {
+        Reflect reflect = on(type);
+
+        try {
+            return reflect.exactMethod(name, types);
+        }
+        catch (NoSuchMethodException e) {
+            try {
+                return reflect.similarMethod(name, types);
+            }
+            catch (NoSuchMethodException e1) {
+                throw new ReflectException(e1);
+            }
+        }
     }
 
     /**
      * Determines if a method has a "similar" signature, especially if wrapping
      * primitive argument types would result in an exactly matching signature.
      */
-    private boolean isSimilarSignature(Method possiblyMatchingMethod, String desiredMethodName, Class<?>[] desiredParamTypes) {
+    private static boolean isSimilarSignature(Method possiblyMatchingMethod, String desiredMethodName, Class<?>[] desiredParamTypes) {
         return possiblyMatchingMethod.getName().equals(desiredMethodName) && match(possiblyMatchingMethod.getParameterTypes(), desiredParamTypes);
     }
 
@@ -485,14 +814,29 @@ public class Reflect {
      * Call a constructor.
      * <p>
      * This is a convenience method for calling
-     * <code>create(new Object[0])</code>
+     * <code>create(new Object[0])</code>. Once the constructor is cached, it
+     * does not allocate anything but the new object and its wrapper in
+     * {@link InvokeMode#METHOD_HANDLE}.
      *
      * @return The wrapped new object, to be used for further reflection.
      * @throws ReflectException If any reflection exception occurred.
      * @see #create(Object...)
      */
     public Reflect create() throws ReflectException {
-        return create(new Object[0]);
+        Constructor<?> constructor = constructor(NO_TYPES);
+
+        try {
+            Invokers.Handle handle = invokeMode == InvokeMode.METHOD_HANDLE ? Invokers.constructor(accessible(constructor)) : null;
+
+            if (handle != null) {
+                return on(Invokers.invokeConstructor(handle));
+            }
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+
+        return on(constructor, NO_ARGS);
     }
 
     /**
@@ -523,20 +867,55 @@ public class Reflect {
      */
     public Reflect create(Object... args) throws ReflectException {
         Class<?>[] types = types(args);
+        return on(constructor(types), args);
+    }
+
+    /**
+     * Searches a constructor with the exact same signature first, then a
+     * constructor with a "similar" signature.
+     */
+    private Constructor<?> constructor(Class<?>[] types) throws ReflectException {
+        Class<?> type = type();
+
+        if (!ReflectCache.isEnabled()) {
+            return constructor(type, types);
+        }
+
+        ReflectCache.Members members = ReflectCache.of(type);
+        Object member = members.constructors.find(types);
+
+        if (member == null) {
+            try {
+                member = constructor(type, types);
+            }
+            catch (ReflectException e) {
+                member = ReflectCache.NOT_FOUND;
+            }
+
+            members.constructors.put(types, member);
+        }
+
+        if (member == ReflectCache.NOT_FOUND) {
+            throw new ReflectException(new NoSuchMethodException(type.getName() + ".<init>" + Arrays.toString(types)));
+        }
+
+        return (Constructor<?>) member;
+    }
+
+    private static Constructor<?> constructor(Class<?> type, Class<?>[] types) throws ReflectException {
 
         // Try invoking the "canonical" constructor, i.e. the one with exact
         // matching argument types
         try {
-            Constructor<?> constructor = type().getDeclaredConstructor(types);
-            return on(constructor, args);
+            return type.getDeclaredConstructor(types);
         }
 
         // If there is no exact match, try to find one that has a "similar"
         // signature if primitive argument types are converted to their wrappers
         catch (NoSuchMethodException e) {
-            for (Constructor<?> constructor : type().getDeclaredConstructors()) {
+            for (Constructor<?> constructor : type.getDeclaredConstructors()) {
                 if (match(constructor.getParameterTypes(), types)) {
-                    return on(constructor, args);
+                    return constructor;
                 }
             }
 
@@ -546,66 +925,16 @@ public class Reflect {
 
     /**
      * Create a proxy for the wrapped object allowing to typesafely invoke
-     * methods on it using a custom interface
+     * methods on it using a custom interface.
+     * <p>
+     * The proxy class and the methods it dispatches to are resolved once per
+     * interface and class of the wrapped object.
      *
      * @param proxyType The interface type that is implemented by the proxy
      * @return A proxy for the wrapped object
      */
-    @SuppressWarnings("unchecked")
     public <P> P as(Class<P> proxyType) {
-        final boolean isMap = (object instanceof Map);
-        final InvocationHandler handler = new InvocationHandler() {
-            @SuppressWarnings("null")
-            @Override
-            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-                String name = method.getName();
-
-                // Actual method name matches always come first
-                try {
-                    return on(object).call(name, args).get();
-                }
-
-                // [#14] Emulate POJO behaviour on wrapped map objects
-                catch (ReflectException e) {
-                    if (isMap) {
-                        Map<String, Object> map = (Map<String, Object>) object;
-                        int length = (args == null ? 0 : args.length);
-
-                        if (length == 0 && name.startsWith("get")) {
-                            return map.get(property(name.substring(3)));
-                        }
-                        else if (length == 0 && name.startsWith("is")) {
-                            return map.get(property(name.substring(2)));
-                        }
-                        else if (length == 1 && name.startsWith("set")) {
-                            map.put(property(name.substring(3)), args[0]);
-                            return null;
-                        }
-                    }
-
-                    throw e;
-                }
-            }
-        };
-
-        return (P) Proxy.newProxyInstance(proxyType.getClassLoader(), new Class[] { proxyType }, handler);
-    }
-
-    /**
-     * Get the POJO property name of an getter/setter
-     */
-    private static String property(String string) {
-        int length = string.length();
-
-        if (length == 0) {
-            return "";
-        }
-        else if (length == 1) {
-            return string.toLowerCase();
-        }
-        else {
-            return string.substring(0, 1).toLowerCase() + string.substring(1);
-        }
+        return Proxies.create(proxyType, object);
     }
 
     // ---------------------------------------------------------------------
@@ -616,10 +945,10 @@ public class Reflect {
      * Check whether two arrays of types match, converting primitive types to
      * their corresponding wrappers.
      */
-    private boolean match(Class<?>[] declaredTypes, Class<?>[] actualTypes) {
+    private static boolean match(Class<?>[] declaredTypes, Class<?>[] actualTypes) {
         if (declaredTypes.length == actualTypes.length) {
             for (int i = 0; i < actualTypes.length; i++) {
-                if (actualTypes[i] == NULL.class)
+                if (actualTypes[i] == NULL.class || declaredTypes[i] == actualTypes[i])
                     continue;
 
                 if (wrapper(declaredTypes[i]).isAssignableFrom(wrapper(actualTypes[i])))
@@ -672,7 +1001,15 @@ public class Reflect {
      */
     private static Reflect on(Constructor<?> constructor, Object... args) throws ReflectException {
         try {
-            return on(accessible(constructor).newInstance(args));
+            accessible(constructor);
+            Invokers.Handle handle = invokeMode == InvokeMode.METHOD_HANDLE ? Invokers.constructor(constructor) : null;
+
+            if (handle != null) {
+                return on(Invokers.invokeConstructor(handle, args));
+            }
+            else {
+                return on(constructor.newInstance(args));
+            }
         }
         catch (Exception e) {
             throw new ReflectException(e);
@@ -685,13 +1022,56 @@ public class Reflect {
     private static Reflect on(Method method, Object object, Object... args) throws ReflectException {
         try {
             accessible(method);
+            Invokers.Handle handle = invokeMode == InvokeMode.METHOD_HANDLE ? Invokers.method(method) : null;
+            Object result;
+
+            if (handle != null) {
+                result = Invokers.invokeMethod(handle, object, args);
+            }
+            else {
+                result = method.invoke(object, args);
+            }
 
             if (method.getReturnType() == void.class) {
-                method.invoke(object, args);
                 return on(object);
             }
             else {
-                return on(method.invoke(object, args));
+                return on(result);
+            }
+        }
+        catch (Exception e) {
+            throw new ReflectException(e);
+        }
+    }
+
+    /**
+     * Wrap an object returned from a method called with up to two arguments,
+     * without allocating an argument array for method handles.
+     */
+    private static Reflect on(Method method, Object object, int count, Object a, Object b) throws ReflectException {
+        try {
+            accessible(method);
+            Invokers.Handle handle = invokeMode == InvokeMode.METHOD_HANDLE ? Invokers.method(method) : null;
+            Object result;
+
+            if (handle != null) {
+                result = Invokers.invokeMethod(handle, object, count, a, b);
+            }
+            else if (count == 0) {
+                result = method.invoke(object, NO_ARGS);
+            }
+            else if (count == 1) {
+                result = method.invoke(object, a);
+            }
+            else {
+                result = method.invoke(object, a, b);
+            }
+
+            if (method.getReturnType() == void.class) {
+                return on(object);
+            }
+            else {
+                return on(result);
             }
         }
         catch (Exception e) {
@@ -716,20 +1096,27 @@ public class Reflect {
      * @see Object#getClass()
      */
     private static Class<?>[] types(Object... values) {
-        if (values == null) {
-            return new Class[0];
+        if (values == null || values.length == 0) {
+            return NO_TYPES;
         }
 
-        Class<?>[] result = new Class[values.length];
+        Class<?>[] result = new Class<?>[values.length];
 
         for (int i = 0; i < values.length; i++) {
             Object value = values[i];
-            result[i] = value == null ? NULL.class : value.getClass();
+            result[i] = type(value);
         }
 
         return result;
     }
 
+    /**
+     * Get the type of an argument
+     */
+    private static Class<?> type(Object value) {
+        return value == null ? NULL.class : value.getClass();
+    }
+
     /**
      * Load a class
      *
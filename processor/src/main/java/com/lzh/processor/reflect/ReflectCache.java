@@ -0,0 +1,264 @@
+package com.lzh.processor.reflect;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A cache of the members looked up by {@link Reflect}.
+ * <p>
+ * Methods, fields and constructors are cached per class, name and argument
+ * types. Failed lookups are cached as well, so a miss does not scan the class
+ * hierarchy again. The cache of a class is attached to it by a
+ * {@link ClassValue}, so it does not prevent the class loader from being
+ * unloaded. Signatures with argument types that are not visible from the
+ * class loader of the cached class are never cached for the same reason.
+ */
+public final class ReflectCache {
+
+    /**
+     * Marker of a cached failed lookup
+     */
+    static final Object NOT_FOUND = new Object();
+
+    private static volatile boolean enabled = true;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+
+    private static final ClassValue<Members> CACHE = new ClassValue<Members>() {
+        @Override
+        protected Members computeValue(Class<?> type) {
+            return new Members(type);
+        }
+    };
+
+    private ReflectCache() {}
+
+    /**
+     * Enable or disable the cache. It is enabled by default.
+     */
+    public static void setEnabled(boolean enabled) {
+        ReflectCache.enabled = enabled;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * The number of lookups served by the cache, including cached failures
+     */
+    public static long hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * The number of lookups that had to scan the class hierarchy
+     */
+    public static long missCount() {
+        return misses.get();
+    }
+
+    public static void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+    }
+
+    static Members of(Class<?> type) {
+        return CACHE.get(type);
+    }
+
+    /**
+     * The cached members of one class
+     */
+    static final class Members {
+        private final Class<?> type;
+        private final ConcurrentMap<String, Signatures> exactMethods = new ConcurrentHashMap<String, Signatures>();
+        private final ConcurrentMap<String, Signatures> similarMethods = new ConcurrentHashMap<String, Signatures>();
+        private final ConcurrentMap<String, Signatures> fields = new ConcurrentHashMap<String, Signatures>();
+        final Signatures constructors;
+
+        Members(Class<?> type) {
+            this.type = type;
+            this.constructors = new Signatures(type);
+        }
+
+        Signatures exactMethods(String name) {
+            return signatures(exactMethods, name);
+        }
+
+        Signatures similarMethods(String name) {
+            return signatures(similarMethods, name);
+        }
+
+        Signatures fields(String name) {
+            return signatures(fields, name);
+        }
+
+        private Signatures signatures(ConcurrentMap<String, Signatures> map, String name) {
+            Signatures signatures = map.get(name);
+            if (signatures == null) {
+                signatures = new Signatures(type);
+                Signatures old = map.putIfAbsent(name, signatures);
+                if (old != null) {
+                    signatures = old;
+                }
+            }
+            return signatures;
+        }
+    }
+
+    /**
+     * The cached members of one name, keyed by argument types.
+     * <p>
+     * There are only a few signatures per name, so they are kept in a copy on
+     * write array of at most {@link #MAX_ENTRIES} and compared element by element.
+     */
+    static final class Signatures {
+        private static final Entry[] EMPTY = {};
+
+        /**
+         * The maximum number of signatures cached per name
+         */
+        static final int MAX_ENTRIES = 16;
+
+        private final Class<?> owner;
+        private volatile Entry[] entries = EMPTY;
+
+        Signatures(Class<?> owner) {
+            this.owner = owner;
+        }
+
+        /**
+         * Find a cached member, {@link ReflectCache#NOT_FOUND} for a cached
+         * failure, or <code>null</code> if it is not cached yet.
+         */
+        Object find(Class<?>[] types) {
+            for (Entry entry : entries) {
+                if (entry.matches(types)) {
+                    hits.incrementAndGet();
+                    return entry.member;
+                }
+            }
+
+            misses.incrementAndGet();
+            return null;
+        }
+
+        /**
+         * Find a cached member by up to two argument types without allocating
+         * an array of them.
+         *
+         * @see #find(Class[])
+         */
+        Object find(int count, Class<?> a, Class<?> b) {
+            for (Entry entry : entries) {
+                if (entry.matches(count, a, b)) {
+                    hits.incrementAndGet();
+                    return entry.member;
+                }
+            }
+
+            misses.incrementAndGet();
+            return null;
+        }
+
+        /**
+         * Cache a member. A concurrent lookup may have cached the same
+         * signature already, so it is checked again under the lock. When
+         * {@link #MAX_ENTRIES} is reached the oldest entry is dropped, so
+         * lookups by many distinct argument types do not grow it without bound.
+         *
+         * @param types The argument types, copied so the caller may reuse the array
+         */
+        synchronized void put(Class<?>[] types, Object member) {
+            if (!isVisible(types)) {
+                return;
+            }
+
+            Entry[] old = entries;
+            for (Entry entry : old) {
+                if (entry.matches(types)) {
+                    return;
+                }
+            }
+
+            int drop = old.length < MAX_ENTRIES ? 0 : 1;
+            Entry[] result = new Entry[old.length - drop + 1];
+            System.arraycopy(old, drop, result, 0, old.length - drop);
+            result[result.length - 1] = new Entry(types.clone(), member);
+            entries = result;
+        }
+
+        /**
+         * Argument types from other class loaders would keep them alive as long
+         * as the owner class lives.
+         */
+        private boolean isVisible(Class<?>[] types) {
+            for (Class<?> type : types) {
+                ClassLoader typeLoader = type.getClassLoader();
+                if (!isAncestor(typeLoader, owner.getClassLoader())
+                        && !isAncestor(typeLoader, ReflectCache.class.getClassLoader())) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        private static boolean isAncestor(ClassLoader ancestor, ClassLoader loader) {
+            if (ancestor == null) {
+                return true;
+            }
+
+            while (loader != null) {
+                if (loader == ancestor) {
+                    return true;
+                }
+                loader = loader.getParent();
+            }
+            return false;
+        }
+    }
+
+    /**
+     * A cached member and its interned signature. Lookups compare the
+     * argument types against the interned array, so the steady state does not
+     * need an array of its own.
+     */
+    private static final class Entry {
+        final Class<?>[] types;
+        final Object member;
+
+        Entry(Class<?>[] types, Object member) {
+            this.types = types;
+            this.member = member;
+        }
+
+        boolean matches(Class<?>[] actual) {
+            if (types.length != actual.length) {
+                return false;
+            }
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] != actual[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        boolean matches(int count, Class<?> a, Class<?> b) {
+            switch (count) {
+                case 0:
+                    return types.length == 0;
+                case 1:
+                    return types.length == 1 && types[0] == a;
+                case 2:
+                    return types.length == 2 && types[0] == a && types[1] == b;
+                default:
+                    return false;
+            }
+        }
+    }
+}
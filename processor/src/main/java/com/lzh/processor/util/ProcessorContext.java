@@ -0,0 +1,64 @@
+package com.lzh.processor.util;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * The tools of one processing environment,created by processor init and passed to the parsers and factories.
+ * Nothing is shared between processing environments,so compilations in the same JVM never affect each other.
+ * <p>
+ * Elements,Types and Filer belong to javac thread,only {@link #getTypeNames()} and {@link #getOptions()}
+ * could be used by the factories building java files in parallel.
+ */
+public class ProcessorContext {
+
+	private final Elements elementUtils;
+	private final Filer filer;
+	private final Messager messager;
+	private final Types typeUtils;
+	private final TypeNames typeNames = new TypeNames();
+	private final Map<String, String> options;
+
+	public ProcessorContext(ProcessingEnvironment env) {
+		this.elementUtils = env.getElementUtils();
+		this.filer = env.getFiler();
+		this.messager = env.getMessager();
+		this.typeUtils = env.getTypeUtils();
+		this.options = Collections.unmodifiableMap(new HashMap<>(env.getOptions()));
+	}
+
+	public Elements getElementUtils() {
+		return elementUtils;
+	}
+
+	public Filer getFiler() {
+		return filer;
+	}
+
+	public Messager getMessager() {
+		return messager;
+	}
+
+	public Types getTypeUtils() {
+		return typeUtils;
+	}
+
+	public TypeNames getTypeNames() {
+		return typeNames;
+	}
+
+	/**
+	 * processor options passed by -A
+	 */
+	public Map<String, String> getOptions() {
+		return options;
+	}
+
+}
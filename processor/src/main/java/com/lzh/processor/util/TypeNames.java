@@ -0,0 +1,81 @@
+package com.lzh.processor.util;
+
+import com.lzh.processor.annoapi.FieldType;
+import com.squareup.javapoet.ArrayTypeName;
+import com.squareup.javapoet.ClassName;
+import com.squareup.javapoet.ParameterizedTypeName;
+import com.squareup.javapoet.TypeName;
+
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Resolve and cache the type names used by generated code during one processor run.
+ * It is thread safe,the java files are built in parallel.
+ */
+public class TypeNames {
+
+    public static final ClassName STRING = ClassName.get(String.class);
+    private static final ClassName LIST = ClassName.get(List.class);
+    private static final ClassName SET = ClassName.get(Set.class);
+
+    private final ConcurrentMap<String, ClassName> classNames = new ConcurrentHashMap<>();
+    private final Map<FieldType, ConcurrentMap<TypeName, TypeName>> fieldTypes = new EnumMap<>(FieldType.class);
+
+    public TypeNames() {
+        for (FieldType type : FieldType.values()) {
+            fieldTypes.put(type, new ConcurrentHashMap<TypeName, TypeName>());
+        }
+    }
+
+    /**
+     * get class name by qualified name,such as android.content.Intent
+     */
+    public ClassName get(String qualifiedName) {
+        ClassName className = classNames.get(qualifiedName);
+        if (className == null) {
+            className = ClassName.bestGuess(qualifiedName);
+            ClassName old = classNames.putIfAbsent(qualifiedName, className);
+            if (old != null) {
+                className = old;
+            }
+        }
+        return className;
+    }
+
+    /**
+     * get type name of field,wrap the type by list,set or array if needed
+     */
+    public TypeName get(FieldType fieldType, TypeName type) {
+        if (fieldType == FieldType.Serializable) {
+            return type;
+        }
+        ConcurrentMap<TypeName, TypeName> cache = fieldTypes.get(fieldType);
+        TypeName typeName = cache.get(type);
+        if (typeName == null) {
+            typeName = create(fieldType, type);
+            TypeName old = cache.putIfAbsent(type, typeName);
+            if (old != null) {
+                typeName = old;
+            }
+        }
+        return typeName;
+    }
+
+    private TypeName create(FieldType fieldType, TypeName type) {
+        switch (fieldType) {
+            case array:
+                return ArrayTypeName.of(type);
+            case list:
+                return ParameterizedTypeName.get(LIST, type.box());
+            case set:
+                return ParameterizedTypeName.get(SET, type.box());
+            default:
+                return type;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package android.app;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+/**
+ * JVM stand-in of android.app.Fragment for tests
+ */
+public class Fragment {
+
+    private Bundle arguments;
+
+    public Activity getActivity() {
+        return null;
+    }
+
+    public Bundle getArguments() {
+        return arguments;
+    }
+
+    public void setArguments(Bundle arguments) {
+        this.arguments = arguments;
+    }
+
+    public void startActivityForResult(Intent intent, int requestCode) {
+    }
+}
@@ -0,0 +1,155 @@
+package android.content;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+
+/**
+ * JVM stand-in of android.content.Intent for tests,the extras are kept by {@link Bundle}.
+ * <p>
+ * {@link #marshall()} and {@link #unmarshall(byte[])} emulate the copy through Parcel
+ * when the Intent is delivered to the started activity.
+ */
+public class Intent {
+
+    private Bundle extras;
+
+    public Intent() {
+    }
+
+    public Intent(Context context, Class<?> clz) {
+    }
+
+    private Bundle extras() {
+        if (extras == null) {
+            extras = new Bundle();
+        }
+        return extras;
+    }
+
+    public Intent putExtra(String name, boolean value) {
+        extras().putBoolean(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, int value) {
+        extras().putInt(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, long value) {
+        extras().putLong(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, double value) {
+        extras().putDouble(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, String value) {
+        extras().putString(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, byte[] value) {
+        extras().putByteArray(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, int[] value) {
+        extras().putIntArray(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, long[] value) {
+        extras().putLongArray(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, String[] value) {
+        extras().putStringArray(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, Serializable value) {
+        extras().putSerializable(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, Parcelable value) {
+        extras().putParcelable(name, value);
+        return this;
+    }
+
+    public Intent putExtra(String name, Bundle value) {
+        extras().putBundle(name, value);
+        return this;
+    }
+
+    public Intent putStringArrayListExtra(String name, ArrayList<String> value) {
+        extras().putStringArrayList(name, value);
+        return this;
+    }
+
+    public Intent putIntegerArrayListExtra(String name, ArrayList<Integer> value) {
+        extras().putIntegerArrayList(name, value);
+        return this;
+    }
+
+    public Intent putParcelableArrayListExtra(String name, ArrayList<? extends Parcelable> value) {
+        extras().putParcelableArrayList(name, value);
+        return this;
+    }
+
+    public Intent putExtras(Bundle extras) {
+        extras().putAll(extras);
+        return this;
+    }
+
+    public boolean hasExtra(String name) {
+        return extras != null && extras.containsKey(name);
+    }
+
+    public String getStringExtra(String name) {
+        return extras == null ? null : extras.getString(name);
+    }
+
+    public byte[] getByteArrayExtra(String name) {
+        return extras == null ? null : extras.getByteArray(name);
+    }
+
+    public Serializable getSerializableExtra(String name) {
+        return extras == null ? null : extras.getSerializable(name);
+    }
+
+    public <T extends Parcelable> T getParcelableExtra(String name) {
+        return extras == null ? null : extras.<T>getParcelable(name);
+    }
+
+    public Bundle getBundleExtra(String name) {
+        return extras == null ? null : extras.getBundle(name);
+    }
+
+    public Bundle getExtras() {
+        return extras == null ? null : new Bundle(extras);
+    }
+
+    /**
+     * write the extras as Parcel does when the Intent is delivered
+     */
+    public byte[] marshall() {
+        return extras().marshall();
+    }
+
+    /**
+     * read the Intent written by {@link #marshall()}
+     */
+    public static Intent unmarshall(byte[] data) {
+        Intent intent = new Intent();
+        intent.extras = Bundle.unmarshall(data);
+        return intent;
+    }
+}
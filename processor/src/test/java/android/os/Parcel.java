@@ -0,0 +1,214 @@
+package android.os;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * JVM stand-in of android.os.Parcel for tests,only the methods used by generated code are provided.
+ * <p>
+ * The values are written into a growable byte array in the layout of Parcel:
+ * 4 bytes per int,8 bytes per long,a String as its length and UTF-16 chars,-1 as the length of null.
+ */
+public final class Parcel {
+
+    private byte[] data = new byte[256];
+    private int position;
+    private int size;
+
+    private Parcel() {
+    }
+
+    public static Parcel obtain() {
+        return new Parcel();
+    }
+
+    public void recycle() {
+        position = 0;
+        size = 0;
+    }
+
+    public byte[] marshall() {
+        return Arrays.copyOf(data, size);
+    }
+
+    public void unmarshall(byte[] bytes, int offset, int length) {
+        ensure(length);
+        System.arraycopy(bytes, offset, data, 0, length);
+        size = length;
+        position = length;
+    }
+
+    public void setDataPosition(int position) {
+        this.position = position;
+    }
+
+    public void writeInt(int value) {
+        ensure(position + 4);
+        data[position++] = (byte) value;
+        data[position++] = (byte) (value >> 8);
+        data[position++] = (byte) (value >> 16);
+        data[position++] = (byte) (value >> 24);
+        size = Math.max(size, position);
+    }
+
+    public int readInt() {
+        return (data[position++] & 0xFF) | (data[position++] & 0xFF) << 8
+                | (data[position++] & 0xFF) << 16 | (data[position++] & 0xFF) << 24;
+    }
+
+    public void writeLong(long value) {
+        writeInt((int) value);
+        writeInt((int) (value >> 32));
+    }
+
+    public long readLong() {
+        long low = readInt() & 0xFFFFFFFFL;
+        return low | (long) readInt() << 32;
+    }
+
+    public void writeByte(byte value) {
+        writeInt(value);
+    }
+
+    public byte readByte() {
+        return (byte) readInt();
+    }
+
+    public void writeString(String value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        int length = value.length();
+        writeInt(length);
+        ensure(position + length * 2);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            data[position++] = (byte) c;
+            data[position++] = (byte) (c >> 8);
+        }
+        size = Math.max(size, position);
+    }
+
+    public String readString() {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ((data[position++] & 0xFF) | (data[position++] & 0xFF) << 8);
+        }
+        return new String(chars);
+    }
+
+    public void writeIntArray(int[] value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.length);
+        for (int item : value) {
+            writeInt(item);
+        }
+    }
+
+    public int[] createIntArray() {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        int[] value = new int[length];
+        for (int i = 0; i < length; i++) {
+            value[i] = readInt();
+        }
+        return value;
+    }
+
+    public void writeStringList(List<String> value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.size());
+        for (String item : value) {
+            writeString(item);
+        }
+    }
+
+    public ArrayList<String> createStringArrayList() {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        ArrayList<String> value = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            value.add(readString());
+        }
+        return value;
+    }
+
+    public <T extends Parcelable> void writeTypedList(List<T> value) {
+        if (value == null) {
+            writeInt(-1);
+            return;
+        }
+        writeInt(value.size());
+        for (T item : value) {
+            if (item == null) {
+                writeInt(0);
+            } else {
+                writeInt(1);
+                item.writeToParcel(this, 0);
+            }
+        }
+    }
+
+    public <T> ArrayList<T> createTypedArrayList(Parcelable.Creator<T> creator) {
+        int length = readInt();
+        if (length < 0) {
+            return null;
+        }
+        ArrayList<T> value = new ArrayList<>(length);
+        for (int i = 0; i < length; i++) {
+            value.add(readInt() == 0 ? null : creator.createFromParcel(this));
+        }
+        return value;
+    }
+
+    /**
+     * only null and Parcelable values are supported,with the class name to find its CREATOR
+     */
+    public void writeValue(Object value) {
+        if (value == null) {
+            writeString(null);
+            return;
+        }
+        if (!(value instanceof Parcelable)) {
+            throw new RuntimeException("Parcel: unable to marshal value " + value);
+        }
+        writeString(value.getClass().getName());
+        ((Parcelable) value).writeToParcel(this, 0);
+    }
+
+    public Object readValue(ClassLoader loader) {
+        String className = readString();
+        if (className == null) {
+            return null;
+        }
+        try {
+            Parcelable.Creator<?> creator = (Parcelable.Creator<?>) Class.forName(className, true, loader)
+                    .getField("CREATOR").get(null);
+            return creator.createFromParcel(this);
+        } catch (ClassNotFoundException | NoSuchFieldException | IllegalAccessException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void ensure(int capacity) {
+        if (capacity > data.length) {
+            data = Arrays.copyOf(data, Math.max(capacity, data.length * 2));
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.lzh.processor.compiler;
+
+import com.google.testing.compile.Compilation;
+import com.lzh.processor.annoapi.FieldType;
+import com.lzh.processor.data.FieldData;
+import com.lzh.processor.runtime.BinaryWriter;
+import com.squareup.javapoet.TypeName;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Round trip,size and schema evolution of the generated RequestData.toBytes()/fromBytes(byte[]).
+ */
+public class BinaryCodecTest {
+
+    private static final String REQUEST_DATA = "demo.BinActivity_Dispatcher$RequestData";
+
+    @Test
+    public void roundTrip() throws Exception {
+        Class<?> clz = compile(
+                "@Field(name = \"count\", type = int.class),",
+                "@Field(name = \"id\", type = long.class),",
+                "@Field(name = \"flag\", type = boolean.class),",
+                "@Field(name = \"letter\", type = char.class),",
+                "@Field(name = \"ratio\", type = double.class),",
+                "@Field(name = \"scale\", type = float.class),",
+                "@Field(name = \"boxed\", type = Integer.class),",
+                "@Field(name = \"empty\", type = Integer.class),",
+                "@Field(name = \"title\", type = String.class),",
+                "@Field(name = \"tags\", type = String.class, fieldType = FieldType.array),",
+                "@Field(name = \"nums\", type = int.class, fieldType = FieldType.array),",
+                "@Field(name = \"raw\", type = byte.class, fieldType = FieldType.array),",
+                "@Field(name = \"names\", type = String.class, fieldType = FieldType.list),",
+                "@Field(name = \"keys\", type = String.class, fieldType = FieldType.set),",
+                "@Field(name = \"date\", type = java.util.Date.class)");
+        Object data = clz.newInstance();
+        Compilations.call(data, "setCount", -42);
+        Compilations.call(data, "setId", Long.MAX_VALUE);
+        Compilations.call(data, "setFlag", true);
+        Compilations.call(data, "setLetter", '\u4e2d');
+        Compilations.call(data, "setRatio", 0.25);
+        Compilations.call(data, "setScale", 1.5f);
+        Compilations.call(data, "setBoxed", 7);
+        Compilations.call(data, "setTitle", "title \u4e2d\u6587");
+        Compilations.call(data, "setTags", (Object) new String[]{"a", null, ""});
+        Compilations.call(data, "setNums", (Object) new int[]{1, -1, Integer.MIN_VALUE});
+        Compilations.call(data, "setRaw", (Object) new byte[]{1, 2, 3});
+        Compilations.call(data, "setNames", Arrays.asList("x", "y"));
+        Compilations.call(data, "setKeys", new LinkedHashSet<>(Arrays.asList("k1", "k2")));
+        Compilations.call(data, "setDate", new Date(1000));
+
+        Object copy = Compilations.call(clz, "fromBytes", Compilations.call(data, "toBytes"));
+        assertThat(Compilations.call(copy, "getCount")).isEqualTo(-42);
+        assertThat(Compilations.call(copy, "getId")).isEqualTo(Long.MAX_VALUE);
+        assertThat(Compilations.call(copy, "getFlag")).isEqualTo(true);
+        assertThat(Compilations.call(copy, "getLetter")).isEqualTo('\u4e2d');
+        assertThat(Compilations.call(copy, "getRatio")).isEqualTo(0.25);
+        assertThat(Compilations.call(copy, "getScale")).isEqualTo(1.5f);
+        assertThat(Compilations.call(copy, "getBoxed")).isEqualTo(7);
+        assertThat(Compilations.call(copy, "getEmpty")).isNull();
+        assertThat(Compilations.call(copy, "getTitle")).isEqualTo("title \u4e2d\u6587");
+        assertThat((String[]) Compilations.call(copy, "getTags")).isEqualTo(new String[]{"a", null, ""});
+        assertThat((int[]) Compilations.call(copy, "getNums")).isEqualTo(new int[]{1, -1, Integer.MIN_VALUE});
+        assertThat((byte[]) Compilations.call(copy, "getRaw")).isEqualTo(new byte[]{1, 2, 3});
+        assertThat(Compilations.call(copy, "getNames")).isEqualTo(Arrays.asList("x", "y"));
+        assertThat(Compilations.call(copy, "getKeys")).isEqualTo(new LinkedHashSet<>(Arrays.asList("k1", "k2")));
+        assertThat(Compilations.call(copy, "getDate")).isEqualTo(new Date(1000));
+    }
+
+    @Test
+    public void smallerThanJavaSerialization() throws Exception {
+        Class<?> clz = compile(
+                "@Field(name = \"count\", type = int.class),",
+                "@Field(name = \"id\", type = long.class),",
+                "@Field(name = \"title\", type = String.class),",
+                "@Field(name = \"names\", type = String.class, fieldType = FieldType.list)");
+        Object data = clz.newInstance();
+        Compilations.call(data, "setCount", 3);
+        Compilations.call(data, "setId", 100L);
+        Compilations.call(data, "setTitle", "hello");
+        Compilations.call(data, "setNames", Arrays.asList("a", "b", "c"));
+
+        byte[] bytes = (byte[]) Compilations.call(data, "toBytes");
+        ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(serialized);
+        out.writeObject(data);
+        out.close();
+        // the header,then a tag and a short value of every field
+        assertThat(bytes.length).isAtMost(40);
+        assertThat(bytes.length).isLessThan(serialized.size() / 5);
+
+        // the header and a tag of every field,with one byte of the primitive values
+        byte[] empty = (byte[]) Compilations.call(clz.newInstance(), "toBytes");
+        assertThat(empty.length).isAtMost(24);
+    }
+
+    @Test
+    public void otherVersionIsTolerated() throws Exception {
+        Class<?> v1 = compile(
+                "@Field(name = \"title\", type = String.class),",
+                "@Field(name = \"count\", type = int.class),",
+                "@Field(name = \"removed\", type = String.class)");
+        Class<?> v2 = compile(
+                "@Field(name = \"title\", type = String.class, fieldType = FieldType.list),",
+                "@Field(name = \"count\", type = int.class),",
+                "@Field(name = \"added\", type = long.class, defValue = \"5\")");
+        Object data = v1.newInstance();
+        Compilations.call(data, "setTitle", "title");
+        Compilations.call(data, "setCount", 9);
+        Compilations.call(data, "setRemoved", "removed");
+
+        // the title of another type is skipped,instead of being read as a list
+        Object copy = Compilations.call(v2, "fromBytes", Compilations.call(data, "toBytes"));
+        assertThat(Compilations.call(copy, "getTitle")).isNull();
+        assertThat(Compilations.call(copy, "getCount")).isEqualTo(9);
+        assertThat(Compilations.call(copy, "getAdded")).isEqualTo(5L);
+
+        Compilations.call(copy, "setTitle", Arrays.asList("a", "b"));
+        Object back = Compilations.call(v1, "fromBytes", Compilations.call(copy, "toBytes"));
+        assertThat(Compilations.call(back, "getTitle")).isNull();
+        assertThat(Compilations.call(back, "getCount")).isEqualTo(9);
+        assertThat(Compilations.call(back, "getRemoved")).isNull();
+    }
+
+    @Test
+    public void unknownFieldOfSameSchemaFails() throws Exception {
+        Class<?> clz = compile("@Field(name = \"count\", type = int.class)");
+        byte[] bytes = (byte[]) Compilations.call(clz.newInstance(), "toBytes");
+        java.lang.reflect.Field count = clz.getDeclaredField("ID_count");
+        count.setAccessible(true);
+        int id = (count.getInt(null) + 1) & 0xFFFF;
+        byte[] unknown = new BinaryWriter().writeInt(id, 1).toByteArray();
+        byte[] corrupted = Arrays.copyOf(bytes, bytes.length + unknown.length);
+        System.arraycopy(unknown, 0, corrupted, bytes.length, unknown.length);
+        try {
+            Compilations.call(clz, "fromBytes", (Object) corrupted);
+            fail("the unknown field of the same schema is accepted");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("unknown tag");
+        }
+    }
+
+    @Test
+    public void typeIsPartOfId() {
+        FieldData list = intField("title");
+        list.setFieldType(FieldType.list);
+        int[] ids = BinaryCodec.createIds(Arrays.asList(intField("title"), list));
+        assertThat(ids[0]).isNotEqualTo(ids[1]);
+    }
+
+    @Test
+    public void collidedIdsAreReported() {
+        // the ids are 16 bits,so the fields could be renamed to avoid it
+        Compilation compilation = Compilations.compile(activity(
+                "@Field(name = \"aaad\", type = int.class),",
+                "@Field(name = \"" + collision("aaad") + "\", type = int.class)"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("the binary ids of field aaad and");
+    }
+
+    /**
+     * compile the activity with the fields,return the class of its RequestData
+     */
+    private static Class<?> compile(String... fields) throws IOException, ClassNotFoundException {
+        Compilation compilation = Compilations.compile(activity(fields));
+        assertThat(compilation).succeeded();
+        return Compilations.load(compilation).loadClass(REQUEST_DATA);
+    }
+
+    private static javax.tools.JavaFileObject activity(String... fields) {
+        List<String> lines = new java.util.ArrayList<>(Arrays.asList(
+                "package demo;",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.FieldType;",
+                "import com.lzh.processor.annoapi.Params;",
+                "@Params(fields = {"));
+        lines.addAll(Arrays.asList(fields));
+        lines.add("})");
+        lines.add("public class BinActivity extends android.app.Activity {}");
+        return Compilations.source("demo.BinActivity", lines.toArray(new String[lines.size()]));
+    }
+
+    /**
+     * find another int field whose id is the same as the field of name
+     */
+    private static String collision(String name) {
+        for (int i = 0; ; i++) {
+            try {
+                BinaryCodec.createIds(Arrays.asList(intField(name), intField("f" + i)));
+            } catch (IllegalArgumentException e) {
+                return "f" + i;
+            }
+        }
+    }
+
+    private static FieldData intField(String name) {
+        FieldData data = new FieldData();
+        data.setName(name);
+        data.setType(TypeName.INT);
+        data.setFieldType(FieldType.Serializable);
+        return data;
+    }
+}
@@ -0,0 +1,201 @@
+package com.lzh.processor.compiler;
+
+import com.google.common.io.ByteStreams;
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.processing.Processor;
+import javax.tools.JavaFileObject;
+
+/**
+ * Helpers of the in-process compilations of tests,the android classes are the JVM stand-ins of test sources.
+ */
+final class Compilations {
+
+    private static final String CLASS_OUTPUT = "/CLASS_OUTPUT/";
+    private static final Map<Class<?>, Class<?>> BOXES = new HashMap<>();
+
+    static {
+        BOXES.put(boolean.class, Boolean.class);
+        BOXES.put(byte.class, Byte.class);
+        BOXES.put(char.class, Character.class);
+        BOXES.put(short.class, Short.class);
+        BOXES.put(int.class, Integer.class);
+        BOXES.put(long.class, Long.class);
+        BOXES.put(float.class, Float.class);
+        BOXES.put(double.class, Double.class);
+    }
+
+    private Compilations() {
+    }
+
+    /**
+     * a source file of the class,the lines are joined by line separators
+     */
+    static JavaFileObject source(String qualifiedName, String... lines) {
+        return JavaFileObjects.forSourceLines(qualifiedName, lines);
+    }
+
+    /**
+     * compile the sources with a new {@link Compiler}
+     * @param options the javac options,such as -Akey=value of processor options
+     */
+    static Compilation compile(List<String> options, JavaFileObject... sources) {
+        return compile(new Compiler(), options, sources);
+    }
+
+    static Compilation compile(JavaFileObject... sources) {
+        return compile(new ArrayList<String>(), sources);
+    }
+
+    static Compilation compile(Processor processor, List<String> options, JavaFileObject... sources) {
+        return com.google.testing.compile.Compiler.javac()
+                .withProcessors(processor)
+                .withOptions(options)
+                .compile(sources);
+    }
+
+    /**
+     * the options of javac,the classes of dir are on the class path before the classes of tests
+     */
+    static List<String> classPath(File dir, String... options) {
+        List<String> list = new ArrayList<>(Arrays.asList(options));
+        list.add("-classpath");
+        list.add(dir.getAbsolutePath() + File.pathSeparator + System.getProperty("java.class.path"));
+        return list;
+    }
+
+    /**
+     * the simple names of generated sources,in the order of generation
+     */
+    static List<String> generatedSources(Compilation compilation) {
+        List<String> names = new ArrayList<>();
+        for (JavaFileObject file : compilation.generatedSourceFiles()) {
+            String name = file.getName();
+            names.add(name.substring(name.lastIndexOf('/') + 1, name.length() - ".java".length()));
+        }
+        return names;
+    }
+
+    /**
+     * the content of generated source of class
+     */
+    static String generatedSource(Compilation compilation, String qualifiedName) {
+        try {
+            return compilation.generatedSourceFile(path(qualifiedName)).get().getCharContent(true).toString();
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String path(String qualifiedName) {
+        return qualifiedName.replace('.', '/') + ".java";
+    }
+
+    /**
+     * write the compiled classes into dir,to be the class path of next compilation
+     */
+    static File writeClasses(Compilation compilation, File dir) throws IOException {
+        for (Map.Entry<String, byte[]> entry : classes(compilation).entrySet()) {
+            File file = new File(dir, entry.getKey().replace('.', File.separatorChar) + ".class");
+            if (!file.getParentFile().isDirectory() && !file.getParentFile().mkdirs()) {
+                throw new IOException("can not create " + file.getParentFile());
+            }
+            OutputStream output = new FileOutputStream(file);
+            try {
+                output.write(entry.getValue());
+            } finally {
+                output.close();
+            }
+        }
+        return dir;
+    }
+
+    /**
+     * load the compiled classes,the other classes are loaded by the class loader of tests
+     */
+    static ClassLoader load(Compilation compilation) throws IOException {
+        final Map<String, byte[]> classes = classes(compilation);
+        return new ClassLoader(Compilations.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] bytes = classes.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+    }
+
+    /**
+     * call the public method of the loaded classes by name and count of arguments
+     * @param target the instance,or the class to call a static method
+     */
+    static Object call(Object target, String name, Object... args) {
+        Class<?> clz = target instanceof Class ? (Class<?>) target : target.getClass();
+        for (Method method : clz.getMethods()) {
+            if (!method.getName().equals(name) || method.getParameterTypes().length != args.length
+                    || !matches(method.getParameterTypes(), args)) {
+                continue;
+            }
+            try {
+                return method.invoke(target instanceof Class ? null : target, args);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            } catch (InvocationTargetException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new AssertionError(cause);
+            }
+        }
+        throw new AssertionError("no method " + name + " in " + clz);
+    }
+
+    private static boolean matches(Class<?>[] types, Object[] args) {
+        for (int i = 0; i < types.length; i++) {
+            Class<?> type = types[i].isPrimitive() ? BOXES.get(types[i]) : types[i];
+            if (args[i] != null && !type.isInstance(args[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * the bytes of compiled classes,keyed by binary name
+     */
+    private static Map<String, byte[]> classes(Compilation compilation) throws IOException {
+        Map<String, byte[]> classes = new HashMap<>();
+        for (JavaFileObject file : compilation.generatedFiles()) {
+            String path = file.toUri().getPath();
+            int start = path.indexOf(CLASS_OUTPUT);
+            if (file.getKind() != JavaFileObject.Kind.CLASS || start < 0) {
+                continue;
+            }
+            String name = path.substring(start + CLASS_OUTPUT.length(), path.length() - ".class".length());
+            InputStream input = file.openInputStream();
+            try {
+                classes.put(name.replace('/', '.'), ByteStreams.toByteArray(input));
+            } finally {
+                input.close();
+            }
+        }
+        return classes;
+    }
+}
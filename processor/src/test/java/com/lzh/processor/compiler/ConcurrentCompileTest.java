@@ -0,0 +1,109 @@
+package com.lzh.processor.compiler;
+
+import com.google.testing.compile.Compilation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.tools.JavaFileObject;
+
+import android.content.Intent;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+/**
+ * Compilations in the same JVM,as gradle workers run them,do not share any state of processing environment:
+ * every one generates and registers only its own classes,and the generated code works.
+ */
+public class ConcurrentCompileTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 3;
+
+    @Test
+    public void compilationsRunInParallel() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<Compilation>> futures = new ArrayList<>();
+                for (int i = 0; i < THREADS; i++) {
+                    final int index = i;
+                    futures.add(executor.submit(new Callable<Compilation>() {
+                        @Override
+                        public Compilation call() throws Exception {
+                            start.await();
+                            return compile(index);
+                        }
+                    }));
+                }
+                start.countDown();
+                for (int i = 0; i < THREADS; i++) {
+                    check(i, futures.get(i).get());
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * the classes of every compilation are in their own package,with their own field names and formats
+     */
+    private static Compilation compile(int index) {
+        String pkg = "demo" + index;
+        String format = index % 2 == 0 ? "flat" : "serializable";
+        JavaFileObject activity = Compilations.source(pkg + ".MainActivity",
+                "package " + pkg + ";",
+                "import com.lzh.processor.annoapi.DataFormat;",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.Params;",
+                "@Params(route = \"main" + index + "\", format = DataFormat." + format + ",",
+                "        fields = {@Field(name = \"title" + index + "\", type = String.class),",
+                "                @Field(name = \"count\", type = int.class)})",
+                "public class MainActivity extends android.app.Activity {}");
+        JavaFileObject fragment = Compilations.source(pkg + ".ListFragment",
+                "package " + pkg + ";",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.Params;",
+                "@Params(fields = @Field(name = \"page" + index + "\", type = int.class))",
+                "public class ListFragment extends android.app.Fragment {}");
+        return Compilations.compile(Arrays.asList("-Aprocessortools.module=" + pkg + ".Registry"), activity, fragment);
+    }
+
+    private static void check(int index, Compilation compilation) throws Exception {
+        String pkg = "demo" + index;
+        assertThat(compilation).succeeded();
+        assertThat(compilation.warnings()).isEmpty();
+        assertThat(Compilations.generatedSources(compilation))
+                .containsExactly("MainActivity_Dispatcher", "ListFragment_Builder", "Registry");
+
+        String registry = Compilations.generatedSource(compilation, pkg + ".Registry");
+        assertThat(registry).contains("\"main" + index + "\"");
+        for (int other = 0; other < THREADS; other++) {
+            if (other != index) {
+                assertThat(registry).doesNotContain("demo" + other + ".");
+                assertThat(Compilations.generatedSource(compilation, pkg + ".MainActivity_Dispatcher"))
+                        .doesNotContain("title" + other);
+            }
+        }
+
+        Class<?> dispatcher = Compilations.load(compilation).loadClass(pkg + ".MainActivity_Dispatcher");
+        Object request = Compilations.call(dispatcher, "create");
+        Compilations.call(request, "setTitle" + index, "title");
+        Compilations.call(request, "setCount", index);
+        Intent intent = (Intent) Compilations.call(request, "createIntent", (Object) null);
+        Object data = Compilations.call(dispatcher, "getData", intent);
+        assertThat(Compilations.call(data, "getTitle" + index)).isEqualTo("title");
+        assertThat(Compilations.call(data, "getCount")).isEqualTo(index);
+    }
+}
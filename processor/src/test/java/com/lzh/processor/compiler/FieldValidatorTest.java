@@ -0,0 +1,85 @@
+package com.lzh.processor.compiler;
+
+import com.google.testing.compile.Compilation;
+
+import org.junit.Test;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+/**
+ * The fields of @Params are validated before any code is generated,
+ * the problems are reported on the annotated class instead of the generated code.
+ */
+public class FieldValidatorTest {
+
+    @Test
+    public void flatMembersAreReserved() {
+        Compilation compilation = Compilations.compile(activity("flat", "extras", "String"));
+        assertReserved(compilation, "extras");
+
+        compilation = Compilations.compile(activity("flat", "decoded0", "int"));
+        assertReserved(compilation, "decoded0");
+    }
+
+    @Test
+    public void binaryMembersAreReserved() {
+        Compilation compilation = Compilations.compile(activity("serializable", "SCHEMA_HASH", "int"));
+        assertReserved(compilation, "SCHEMA_HASH");
+    }
+
+    @Test
+    public void keyOfOtherFieldIsReserved() {
+        Compilation compilation = Compilations.compile(Compilations.source("demo.KeyActivity",
+                "package demo;",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.Params;",
+                "@Params(fields = {@Field(name = \"title\", type = String.class),",
+                "        @Field(name = \"KEY_title\", type = String.class),",
+                "        @Field(name = \"ID_title\", type = String.class)})",
+                "public class KeyActivity extends android.app.Activity {}"));
+        assertReserved(compilation, "KEY_title");
+        assertReserved(compilation, "ID_title");
+    }
+
+    @Test
+    public void everyProblemIsReported() {
+        Compilation compilation = Compilations.compile(Compilations.source("demo.BadActivity",
+                "package demo;",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.Params;",
+                "@Params(fields = {@Field(name = \"count\", type = int.class, defValue = \"abc\"),",
+                "        @Field(name = \"count\", type = int.class),",
+                "        @Field(name = \"CREATOR\", type = int.class)})",
+                "public class BadActivity extends android.app.Activity {}"));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorCount(3);
+        assertThat(compilation).hadErrorContaining("The defValue 'abc' of field count");
+        assertThat(compilation).hadErrorContaining("The field count is defined more than once in @Params");
+        assertReserved(compilation, "CREATOR");
+    }
+
+    private static JavaFileObject activity(String format, String name, String type) {
+        return Compilations.source("demo.ReservedActivity",
+                "package demo;",
+                "import com.lzh.processor.annoapi.DataFormat;",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.Params;",
+                "@Params(format = DataFormat." + format + ", fields = @Field(name = \"" + name + "\", type = " + type + ".class))",
+                "public class ReservedActivity extends android.app.Activity {}");
+    }
+
+    /**
+     * the name is reported on the annotated class,never on the generated code
+     */
+    private static void assertReserved(Compilation compilation, String name) {
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("The field name " + name + " is used by the generated RequestData");
+        for (Diagnostic<? extends JavaFileObject> error : compilation.errors()) {
+            assertThat(error.getSource().getName()).doesNotContain("_Dispatcher");
+        }
+    }
+}
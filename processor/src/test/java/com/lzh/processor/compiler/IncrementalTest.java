@@ -0,0 +1,245 @@
+package com.lzh.processor.compiler;
+
+import com.google.testing.compile.Compilation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Scanner;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+/**
+ * Compiler works as a gradle isolating processor: every generated file has the annotated class as its only
+ * originating element,so that gradle regenerates only the files of touched classes.
+ */
+public class IncrementalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final JavaFileObject BASE = Compilations.source("demo.BaseActivity",
+            "package demo;",
+            "import com.lzh.processor.annoapi.Field;",
+            "import com.lzh.processor.annoapi.Params;",
+            "@Params(fields = @Field(name = \"title\", type = String.class))",
+            "public abstract class BaseActivity extends android.app.Activity {}");
+    private static final JavaFileObject SUB = Compilations.source("demo.SubActivity",
+            "package demo;",
+            "import com.lzh.processor.annoapi.Field;",
+            "import com.lzh.processor.annoapi.Params;",
+            "@Params(fields = @Field(name = \"count\", type = int.class))",
+            "public class SubActivity extends BaseActivity {}");
+    private static final JavaFileObject OTHER = Compilations.source("demo.OtherFragment",
+            "package demo;",
+            "import com.lzh.processor.annoapi.Field;",
+            "import com.lzh.processor.annoapi.Params;",
+            "@Params(fields = @Field(name = \"id\", type = long.class))",
+            "public class OtherFragment extends android.app.Fragment {}");
+
+    @Test
+    public void originatingElementIsTheAnnotatedClass() {
+        RecordingProcessor processor = new RecordingProcessor();
+        Compilation compilation = Compilations.compile(processor, new ArrayList<String>(), BASE, SUB, OTHER);
+        assertThat(compilation).succeeded();
+
+        Map<String, List<String>> expected = new LinkedHashMap<>();
+        expected.put("demo.BaseActivity_Dispatcher", Collections.singletonList("demo.BaseActivity"));
+        expected.put("demo.SubActivity_Dispatcher", Collections.singletonList("demo.SubActivity"));
+        expected.put("demo.OtherFragment_Builder", Collections.singletonList("demo.OtherFragment"));
+        assertThat(processor.originating).isEqualTo(expected);
+    }
+
+    @Test
+    public void onlyTouchedClassIsRegenerated() throws IOException {
+        Compilation full = Compilations.compile(BASE, SUB, OTHER);
+        assertThat(full).succeeded();
+        assertThat(Compilations.generatedSources(full))
+                .containsExactly("BaseActivity_Dispatcher", "SubActivity_Dispatcher", "OtherFragment_Builder");
+
+        // gradle recompiles the touched source only,the other classes are on the class path
+        RecordingProcessor processor = new RecordingProcessor();
+        Compilation touched = Compilations.compile(processor,
+                Compilations.classPath(Compilations.writeClasses(full, folder.newFolder())), OTHER);
+        assertThat(touched).succeeded();
+        assertThat(Compilations.generatedSources(touched)).containsExactly("OtherFragment_Builder");
+        assertThat(processor.originating.get("demo.OtherFragment_Builder")).containsExactly("demo.OtherFragment");
+    }
+
+    @Test
+    public void subclassIsRegeneratedAlone() throws IOException {
+        Compilation full = Compilations.compile(BASE, SUB);
+        assertThat(full).succeeded();
+
+        // the parent class comes from the class path,its generated class is not generated again
+        Compilation touched = Compilations.compile(
+                Compilations.classPath(Compilations.writeClasses(full, folder.newFolder())), SUB);
+        assertThat(touched).succeeded();
+        assertThat(Compilations.generatedSources(touched)).containsExactly("SubActivity_Dispatcher");
+    }
+
+    @Test
+    public void declaresIncrementalType() throws IOException {
+        InputStream input = Compiler.class.getResourceAsStream("/META-INF/gradle/incremental.annotation.processors");
+        assertThat(input).isNotNull();
+        try {
+            assertThat(new Scanner(input, "UTF-8").useDelimiter("\\A").next().trim())
+                    .isEqualTo(Compiler.class.getName() + ",dynamic");
+        } finally {
+            input.close();
+        }
+
+        RecordingProcessor isolating = new RecordingProcessor();
+        assertThat(Compilations.compile(isolating, new ArrayList<String>(), OTHER)).succeeded();
+        assertThat(isolating.getSupportedOptions()).contains("org.gradle.annotation.processing.isolating");
+
+        // the registry aggregates all of the annotated classes
+        RecordingProcessor aggregating = new RecordingProcessor();
+        assertThat(Compilations.compile(aggregating,
+                Arrays.asList("-Aprocessortools.module=demo.DemoRegistry"), OTHER)).succeeded();
+        assertThat(aggregating.getSupportedOptions()).contains("org.gradle.annotation.processing.aggregating");
+    }
+
+    /**
+     * run {@link Compiler} with a Filer that records the originating elements of generated sources
+     */
+    static class RecordingProcessor extends AbstractProcessor {
+
+        final Compiler compiler = new Compiler();
+        final Map<String, List<String>> originating = Collections.synchronizedMap(new LinkedHashMap<String, List<String>>());
+
+        @Override
+        public Set<String> getSupportedOptions() {
+            return compiler.getSupportedOptions();
+        }
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return compiler.getSupportedAnnotationTypes();
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return compiler.getSupportedSourceVersion();
+        }
+
+        @Override
+        public synchronized void init(ProcessingEnvironment processingEnv) {
+            super.init(processingEnv);
+            compiler.init(new RecordingEnvironment(processingEnv, new RecordingFiler(processingEnv.getFiler())));
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            return compiler.process(annotations, roundEnv);
+        }
+
+        private class RecordingFiler implements Filer {
+
+            private final Filer filer;
+
+            RecordingFiler(Filer filer) {
+                this.filer = filer;
+            }
+
+            @Override
+            public JavaFileObject createSourceFile(CharSequence name, Element... originatingElements) throws IOException {
+                List<String> names = new ArrayList<>();
+                for (Element element : originatingElements) {
+                    names.add(((TypeElement) element).getQualifiedName().toString());
+                }
+                originating.put(name.toString(), names);
+                return filer.createSourceFile(name, originatingElements);
+            }
+
+            @Override
+            public JavaFileObject createClassFile(CharSequence name, Element... originatingElements) throws IOException {
+                return filer.createClassFile(name, originatingElements);
+            }
+
+            @Override
+            public FileObject createResource(JavaFileManager.Location location, CharSequence pkg,
+                                             CharSequence relativeName, Element... originatingElements) throws IOException {
+                return filer.createResource(location, pkg, relativeName, originatingElements);
+            }
+
+            @Override
+            public FileObject getResource(JavaFileManager.Location location, CharSequence pkg,
+                                          CharSequence relativeName) throws IOException {
+                return filer.getResource(location, pkg, relativeName);
+            }
+        }
+    }
+
+    private static class RecordingEnvironment implements ProcessingEnvironment {
+
+        private final ProcessingEnvironment env;
+        private final Filer filer;
+
+        RecordingEnvironment(ProcessingEnvironment env, Filer filer) {
+            this.env = env;
+            this.filer = filer;
+        }
+
+        @Override
+        public Map<String, String> getOptions() {
+            return env.getOptions();
+        }
+
+        @Override
+        public Messager getMessager() {
+            return env.getMessager();
+        }
+
+        @Override
+        public Filer getFiler() {
+            return filer;
+        }
+
+        @Override
+        public Elements getElementUtils() {
+            return env.getElementUtils();
+        }
+
+        @Override
+        public Types getTypeUtils() {
+            return env.getTypeUtils();
+        }
+
+        @Override
+        public SourceVersion getSourceVersion() {
+            return env.getSourceVersion();
+        }
+
+        @Override
+        public Locale getLocale() {
+            return env.getLocale();
+        }
+    }
+}
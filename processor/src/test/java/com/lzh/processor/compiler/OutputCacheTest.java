@@ -0,0 +1,109 @@
+package com.lzh.processor.compiler;
+
+import com.squareup.javapoet.JavaFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.truth.Truth.assertThat;
+
+/**
+ * The cache is shared by the builds writing the same classes at the same time,a reader sees a whole file
+ * of one writer or nothing.
+ */
+public class OutputCacheTest {
+
+    private static final String NAME = "demo.MainActivity_Dispatcher";
+    private static final int WRITERS = 8;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void contentIsKeptByFingerprint() throws Exception {
+        OutputCache cache = new OutputCache(folder.newFolder());
+        assertThat(cache.get(NAME, "a")).isNull();
+        cache.put(NAME, "a", "content a");
+        assertThat(cache.get(NAME, "a")).isEqualTo("content a");
+        assertThat(cache.get(NAME, "b")).isNull();
+        cache.put(NAME, "b", "content b");
+        assertThat(cache.get(NAME, "b")).isEqualTo("content b");
+        assertThat(cache.get(NAME, "a")).isNull();
+    }
+
+    @Test
+    public void concurrentWritersNeverMixContent() throws Exception {
+        final File dir = folder.newFolder();
+        final List<String> contents = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            // of different lengths,so the writes of a shared temporary file would leave the tail of a longer one
+            char[] chars = new char[(WRITERS - i) * 64 * 1024];
+            Arrays.fill(chars, (char) ('a' + i));
+            contents.add(new String(chars));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            for (int round = 0; round < 5; round++) {
+                final CountDownLatch start = new CountDownLatch(1);
+                List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < WRITERS; i++) {
+                    final int index = i;
+                    futures.add(executor.submit(new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            // every build has its own cache instance on the same directory
+                            OutputCache cache = new OutputCache(dir);
+                            start.await();
+                            for (int j = 0; j < 3; j++) {
+                                cache.put(NAME, "fingerprint" + index, contents.get(index));
+                                String cached = cache.get(NAME, "fingerprint" + index);
+                                if (cached != null) {
+                                    assertThat(cached).isEqualTo(contents.get(index));
+                                }
+                            }
+                            return null;
+                        }
+                    }));
+                }
+                start.countDown();
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+
+                // the last file is the whole content of one writer,no temporary file is left
+                OutputCache cache = new OutputCache(dir);
+                int found = 0;
+                for (int i = 0; i < WRITERS; i++) {
+                    String cached = cache.get(NAME, "fingerprint" + i);
+                    if (cached != null) {
+                        assertThat(cached).isEqualTo(contents.get(i));
+                        found++;
+                    }
+                }
+                assertThat(found).isEqualTo(1);
+                assertThat(dir.list()).asList().containsExactly(NAME + ".cache");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void versionContainsJavaPoet() throws Exception {
+        File javaPoet = new File(JavaFile.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        assertThat(OutputCache.processorVersion()).contains(javaPoet.toString());
+        File processor = new File(OutputCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        assertThat(OutputCache.processorVersion()).contains(processor.toString());
+    }
+}
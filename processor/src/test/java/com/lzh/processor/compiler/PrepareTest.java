@@ -0,0 +1,154 @@
+package com.lzh.processor.compiler;
+
+import com.google.testing.compile.Compilation;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import javax.tools.JavaFileObject;
+
+import android.app.Activity;
+import android.content.Intent;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+/**
+ * prepare() encodes the RequestData on the executor,as bytes if every field could be encoded,
+ * or as fillIntent does if a field is Parcelable but not Serializable.
+ */
+public class PrepareTest {
+
+    private static final JavaFileObject PARC = Compilations.source("demo.Parc",
+            "package demo;",
+            "import android.os.Parcel;",
+            "import android.os.Parcelable;",
+            "public class Parc implements Parcelable {",
+            "    public static final Creator<Parc> CREATOR = new Creator<Parc>() {",
+            "        public Parc createFromParcel(Parcel source) {",
+            "            return new Parc(source.readInt());",
+            "        }",
+            "        public Parc[] newArray(int size) {",
+            "            return new Parc[size];",
+            "        }",
+            "    };",
+            "    public final int value;",
+            "    public Parc(int value) {",
+            "        this.value = value;",
+            "    }",
+            "    public int describeContents() {",
+            "        return 0;",
+            "    }",
+            "    public void writeToParcel(Parcel dest, int flags) {",
+            "        dest.writeInt(value);",
+            "    }",
+            "}");
+    private static final JavaFileObject BASE = Compilations.source("demo.BasePrepActivity",
+            "package demo;",
+            "import com.lzh.processor.annoapi.Field;",
+            "import com.lzh.processor.annoapi.Params;",
+            "@Params(fields = @Field(name = \"title\", type = String.class))",
+            "public abstract class BasePrepActivity extends android.app.Activity {}");
+
+    @Test
+    public void parcelableFieldsArePutAsExtras() throws Exception {
+        for (String format : Arrays.asList("flat", "parcelable")) {
+            ClassLoader loader = compile(format,
+                    "@Field(name = \"item\", type = Parc.class),",
+                    "@Field(name = \"items\", type = Parc.class, fieldType = FieldType.list),",
+                    "@Field(name = \"count\", type = int.class)");
+            Class<?> dispatcher = loader.loadClass("demo.PrepActivity_Dispatcher");
+            Class<?> parc = loader.loadClass("demo.Parc");
+            Object item = parc.getConstructor(int.class).newInstance(1);
+            List<Object> items = new ArrayList<>();
+            items.add(parc.getConstructor(int.class).newInstance(2));
+
+            Object request = Compilations.call(dispatcher, "create");
+            Compilations.call(request, "setItem", item);
+            Compilations.call(request, "setItems", items);
+            Compilations.call(request, "setCount", 3);
+            Compilations.call(request, "setTitle", "title");
+            Intent intent = prepareAndStart(request);
+
+            assertThat(intent.hasExtra("demo.PrepActivity" + com.lzh.processor.runtime.Prepared.ENCODED_SUFFIX))
+                    .named(format).isFalse();
+            Object data = Compilations.call(dispatcher, "getData", intent);
+            assertThat(Compilations.call(data, "getItem")).named(format).isSameAs(item);
+            assertThat(Compilations.call(data, "getItems")).isEqualTo(items);
+            assertThat(Compilations.call(data, "getCount")).isEqualTo(3);
+
+            // the parent class decides alone,its fields are still encoded
+            assertThat(intent.hasExtra("demo.BasePrepActivity" + com.lzh.processor.runtime.Prepared.ENCODED_SUFFIX))
+                    .isTrue();
+            Object parent = Compilations.call(loader.loadClass("demo.BasePrepActivity_Dispatcher"), "getData", intent);
+            assertThat(Compilations.call(parent, "getTitle")).isEqualTo("title");
+        }
+    }
+
+    @Test
+    public void serializableFieldsAreEncoded() throws Exception {
+        ClassLoader loader = compile("serializable",
+                "@Field(name = \"names\", type = String.class, fieldType = FieldType.list),",
+                "@Field(name = \"count\", type = int.class)");
+        Class<?> dispatcher = loader.loadClass("demo.PrepActivity_Dispatcher");
+        Object request = Compilations.call(dispatcher, "create");
+        Compilations.call(request, "setNames", Arrays.asList("a", "b"));
+        Compilations.call(request, "setCount", 3);
+        Intent intent = prepareAndStart(request);
+
+        assertThat(intent.hasExtra("demo.PrepActivity" + com.lzh.processor.runtime.Prepared.ENCODED_SUFFIX)).isTrue();
+        assertThat(intent.hasExtra("demo.PrepActivity")).isFalse();
+        Object data = Compilations.call(dispatcher, "getData", intent);
+        assertThat(Compilations.call(data, "getNames")).isEqualTo(Arrays.asList("a", "b"));
+        assertThat(Compilations.call(data, "getCount")).isEqualTo(3);
+    }
+
+    /**
+     * prepare the intent on a fake executor,run its task,then start the activity with the prepared intent
+     * @return the intent the activity is started with
+     */
+    private static Intent prepareAndStart(Object request) {
+        final List<Runnable> tasks = new ArrayList<>();
+        Executor executor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+            }
+        };
+        Object prepared = Compilations.call(request, "prepare", null, executor);
+        assertThat(tasks).hasSize(1);
+        tasks.get(0).run();
+
+        final List<Intent> started = new ArrayList<>();
+        Activity activity = new Activity() {
+            @Override
+            public void startActivityForResult(Intent intent, int requestCode) {
+                started.add(intent);
+            }
+        };
+        Compilations.call(request, "start", activity, prepared);
+        assertThat(started).hasSize(1);
+        return started.get(0);
+    }
+
+    private static ClassLoader compile(String format, String... fields) throws Exception {
+        List<String> lines = new ArrayList<>(Arrays.asList(
+                "package demo;",
+                "import com.lzh.processor.annoapi.DataFormat;",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.FieldType;",
+                "import com.lzh.processor.annoapi.Params;",
+                "@Params(format = DataFormat." + format + ", fields = {"));
+        lines.addAll(Arrays.asList(fields));
+        lines.add("})");
+        lines.add("public class PrepActivity extends BasePrepActivity {}");
+        Compilation compilation = Compilations.compile(PARC, BASE,
+                Compilations.source("demo.PrepActivity", lines.toArray(new String[lines.size()])));
+        assertThat(compilation).succeeded();
+        return Compilations.load(compilation);
+    }
+}
@@ -0,0 +1,109 @@
+package com.lzh.processor.compiler;
+
+import com.google.testing.compile.Compilation;
+import com.lzh.processor.runtime.PayloadGuard;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+import android.content.Intent;
+import android.os.Bundle;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+/**
+ * The values passed by reference are read again by the receiver recreated with the same extras,
+ * such as a fragment restored from back stack or an activity relaunched with its intent.
+ */
+public class ReferenceTest {
+
+    private static final List<String> ITEMS = Collections.unmodifiableList(Arrays.asList("a", "b", "c"));
+
+    @Test
+    public void recreatedFragmentReadsReference() throws Exception {
+        for (String format : Arrays.asList("flat", "serializable", "parcelable")) {
+            ClassLoader loader = compile(new ArrayList<String>(), "RefFragment", format, "android.app.Fragment");
+            Class<?> builder = loader.loadClass("demo.RefFragment_Builder");
+            Object fragment = Compilations.call(Compilations.call(Compilations.call(builder, "create"),
+                    "setItems", ITEMS), "build");
+            assertThat(Compilations.call(Compilations.call(builder, "getData", fragment), "getItems"))
+                    .isSameAs(ITEMS);
+
+            // the fragment is recreated with a copy of its arguments
+            android.app.Fragment recreated = (android.app.Fragment) loader.loadClass("demo.RefFragment").newInstance();
+            recreated.setArguments(new Bundle(((android.app.Fragment) fragment).getArguments()));
+            Object data = Compilations.call(builder, "getData", recreated);
+            assertThat(Compilations.call(data, "getItems")).named(format).isSameAs(ITEMS);
+            assertThat(Compilations.call(data, "getCount")).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void relaunchedActivityReadsReference() throws Exception {
+        for (String format : Arrays.asList("flat", "serializable", "parcelable")) {
+            Class<?> dispatcher = compile(new ArrayList<String>(), "RefActivity", format, "android.app.Activity")
+                    .loadClass("demo.RefActivity_Dispatcher");
+            Intent intent = (Intent) Compilations.call(Compilations.call(Compilations.call(dispatcher, "create"),
+                    "setItems", ITEMS), "createIntent", (Object) null);
+            // the activity is relaunched with a copy of its intent
+            for (Intent launched : Arrays.asList(intent, new Intent().putExtras(intent.getExtras()))) {
+                Object data = Compilations.call(dispatcher, "getData", launched);
+                assertThat(Compilations.call(data, "getItems")).named(format).isSameAs(ITEMS);
+                assertThat(Compilations.call(data, "getCount")).isEqualTo(3);
+            }
+        }
+    }
+
+    @Test
+    public void spilledDataIsReadAgain() throws Exception {
+        List<String> options = Arrays.asList("-Aprocessortools.sizeGuard=true");
+        Class<?> dispatcher = compile(options, "RefActivity", "serializable", "android.app.Activity")
+                .loadClass("demo.RefActivity_Dispatcher");
+        List<String> items = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            items.add("item-" + i);
+        }
+        PayloadGuard.setLimit(1024);
+        PayloadGuard.setPolicy(PayloadGuard.Policy.SPILL);
+        try {
+            Object request = Compilations.call(Compilations.call(dispatcher, "create"), "setItems", ITEMS);
+            Compilations.call(request, "setTitle", items.toString());
+            Intent intent = (Intent) Compilations.call(request, "createIntent", (Object) null);
+            assertThat(intent.getSerializableExtra("demo.RefActivity")).isNull();
+            for (Intent launched : Arrays.asList(intent, new Intent().putExtras(intent.getExtras()))) {
+                Object data = Compilations.call(dispatcher, "getData", launched);
+                assertThat(Compilations.call(data, "getTitle")).isEqualTo(items.toString());
+                assertThat(Compilations.call(data, "getItems")).isSameAs(ITEMS);
+            }
+        } finally {
+            PayloadGuard.setLimit(PayloadGuard.DEFAULT_LIMIT);
+            PayloadGuard.setPolicy(null);
+        }
+    }
+
+    private static ClassLoader compile(List<String> options, String name, String format, String parent)
+            throws Exception {
+        JavaFileObject source = Compilations.source("demo." + name,
+                "package demo;",
+                "import com.lzh.processor.annoapi.DataFormat;",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.FieldType;",
+                "import com.lzh.processor.annoapi.Params;",
+                "import com.lzh.processor.annoapi.Transport;",
+                "@Params(format = DataFormat." + format + ", fields = {",
+                "        @Field(name = \"items\", type = String.class, fieldType = FieldType.list, transport = Transport.reference),",
+                "        @Field(name = \"title\", type = String.class),",
+                "        @Field(name = \"count\", type = int.class, defValue = \"3\")})",
+                "public class " + name + " extends " + parent + " {}");
+        Compilation compilation = Compilations.compile(options, source);
+        assertThat(compilation).succeeded();
+        return Compilations.load(compilation);
+    }
+}
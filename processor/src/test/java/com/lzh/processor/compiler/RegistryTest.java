@@ -0,0 +1,104 @@
+package com.lzh.processor.compiler;
+
+import com.google.testing.compile.Compilation;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaFileObject;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+/**
+ * The registry of module is written in the first round without new classes to register,
+ * never in the last round,so that javac does not warn about it.
+ */
+public class RegistryTest {
+
+    private static final JavaFileObject MAIN = Compilations.source("demo.MainActivity",
+            "package demo;",
+            "import com.lzh.processor.annoapi.Field;",
+            "import com.lzh.processor.annoapi.Params;",
+            "@Params(route = \"main\", fields = @Field(name = \"title\", type = String.class))",
+            "public class MainActivity extends android.app.Activity {}");
+
+    @Test
+    public void registryIsWrittenWithoutWarnings() {
+        Compilation compilation = Compilations.compile(options("-Werror"), MAIN);
+        assertThat(compilation).succeeded();
+        assertThat(compilation.warnings()).isEmpty();
+        String registry = Compilations.generatedSource(compilation, "demo.DemoRegistry");
+        assertThat(registry).contains("MainActivity_Dispatcher");
+    }
+
+    @Test
+    public void classesOfLaterRoundsAreRegistered() {
+        // the other processor generates an annotated class in the first round,it is processed in the second round
+        Compilation compilation = com.google.testing.compile.Compiler.javac()
+                .withProcessors(new Compiler(), new LateProcessor())
+                .withOptions(options("-Werror"))
+                .compile(MAIN);
+        assertThat(compilation).succeeded();
+        String registry = Compilations.generatedSource(compilation, "demo.DemoRegistry");
+        assertThat(registry).contains("MainActivity_Dispatcher");
+        assertThat(registry).contains("LateActivity_Dispatcher");
+    }
+
+    private static List<String> options(String... options) {
+        List<String> list = new ArrayList<>(Arrays.asList(options));
+        list.add("-Aprocessortools.module=demo.DemoRegistry");
+        return list;
+    }
+
+    /**
+     * generate an annotated activity in the first round
+     */
+    static class LateProcessor extends AbstractProcessor {
+
+        private boolean done;
+
+        @Override
+        public Set<String> getSupportedAnnotationTypes() {
+            return Collections.singleton("*");
+        }
+
+        @Override
+        public SourceVersion getSupportedSourceVersion() {
+            return SourceVersion.latestSupported();
+        }
+
+        @Override
+        public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+            if (done) {
+                return false;
+            }
+            done = true;
+            try {
+                JavaFileObject file = processingEnv.getFiler().createSourceFile("demo.LateActivity");
+                Writer writer = file.openWriter();
+                try {
+                    writer.write("package demo;\n"
+                            + "@com.lzh.processor.annoapi.Params(route = \"late\")\n"
+                            + "public class LateActivity extends android.app.Activity {}\n");
+                } finally {
+                    writer.close();
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.lzh.processor.compiler;
+
+import com.google.testing.compile.Compilation;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+
+import javax.tools.JavaFileObject;
+
+import android.content.Intent;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.testing.compile.CompilationSubject.assertThat;
+
+/**
+ * reuse() resets the flat RequestData in place,the other formats are rejected because they are created again
+ * by every reuse(),and the pooled instance is reclaimed from the handle dropped without being used.
+ */
+public class ReuseTest {
+
+    private static final String DISPATCHER = "demo.ReuseActivity_Dispatcher";
+
+    @Test
+    public void onlyFlatIsReusable() {
+        for (String format : new String[]{"serializable", "parcelable", "auto"}) {
+            Compilation compilation = Compilations.compile(activity("ReuseActivity", format, "android.app.Activity", true));
+            assertThat(compilation).failed();
+            assertThat(compilation).hadErrorContaining(
+                    "The RequestData of demo.ReuseActivity is not in flat format,it is created again by every reuse()");
+        }
+        assertThat(Compilations.compile(activity("ReuseActivity", "flat", "android.app.Activity", true))).succeeded();
+    }
+
+    @Test
+    public void parentChainIsFlat() {
+        Compilation compilation = Compilations.compile(
+                activity("BaseActivity", "serializable", "android.app.Activity", false),
+                activity("ReuseActivity", "flat", "BaseActivity", true));
+        assertThat(compilation).failed();
+        assertThat(compilation).hadErrorContaining("The RequestData of demo.BaseActivity is not in flat format");
+
+        // the parent class without fields has no RequestData to create
+        assertThat(Compilations.compile(
+                Compilations.source("demo.BaseActivity",
+                        "package demo;",
+                        "@com.lzh.processor.annoapi.Params",
+                        "public abstract class BaseActivity extends android.app.Activity {}"),
+                activity("ReuseActivity", "flat", "BaseActivity", true))).succeeded();
+    }
+
+    @Test
+    public void dataIsResetInPlace() throws Exception {
+        Class<?> dispatcher = compile();
+        Object first = Compilations.call(dispatcher, "reuse");
+        Object data = requestData(first);
+        Intent intent = (Intent) Compilations.call(Compilations.call(first, "setCount", 3), "createIntent", (Object) null);
+
+        Object second = Compilations.call(dispatcher, "reuse");
+        assertThat(second).isNotSameAs(first);
+        assertThat(requestData(second)).isSameAs(data);
+        Intent other = (Intent) Compilations.call(second, "createIntent", (Object) null);
+        assertThat(Compilations.call(Compilations.call(dispatcher, "getData", intent), "getCount")).isEqualTo(3);
+        assertThat(Compilations.call(Compilations.call(dispatcher, "getData", other), "getCount")).isEqualTo(0);
+    }
+
+    @Test
+    public void droppedHandleIsReclaimed() throws Exception {
+        Class<?> dispatcher = compile();
+        Object held = Compilations.call(dispatcher, "reuse");
+        Object data = requestData(held);
+        Compilations.call(held, "setCount", 3);
+
+        // the handle in use is never reclaimed
+        assertThat(requestData(Compilations.call(dispatcher, "reuse"))).isNotSameAs(data);
+
+        WeakReference<Object> dropped = new WeakReference<>(held);
+        held = null;
+        for (int i = 0; i < 100 && dropped.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertThat(dropped.get()).isNull();
+
+        Object reclaimed = Compilations.call(dispatcher, "reuse");
+        assertThat(requestData(reclaimed)).isSameAs(data);
+        Intent intent = (Intent) Compilations.call(reclaimed, "createIntent", (Object) null);
+        assertThat(Compilations.call(Compilations.call(dispatcher, "getData", intent), "getCount")).isEqualTo(0);
+        assertThat(requestData(Compilations.call(dispatcher, "reuse"))).isSameAs(data);
+    }
+
+    private static Class<?> compile() throws Exception {
+        Compilation compilation = Compilations.compile(activity("ReuseActivity", "flat", "android.app.Activity", true));
+        assertThat(compilation).succeeded();
+        return Compilations.load(compilation).loadClass(DISPATCHER);
+    }
+
+    private static Object requestData(Object handle) throws Exception {
+        java.lang.reflect.Field field = handle.getClass().getDeclaredField(FileFactory.REQUEST_DATA_FIELD_NAME);
+        field.setAccessible(true);
+        return field.get(handle);
+    }
+
+    private static JavaFileObject activity(String name, String format, String parent, boolean reusable) {
+        String field = name.startsWith("Base") ? "title" : "count";
+        String type = name.startsWith("Base") ? "String" : "int";
+        return Compilations.source("demo." + name,
+                "package demo;",
+                "import com.lzh.processor.annoapi.DataFormat;",
+                "import com.lzh.processor.annoapi.Field;",
+                "import com.lzh.processor.annoapi.Params;",
+                "@Params(format = DataFormat." + format + ", reusable = " + reusable + ",",
+                "        fields = @Field(name = \"" + field + "\", type = " + type + ".class))",
+                "public " + (name.startsWith("Base") ? "abstract " : "") + "class " + name + " extends " + parent + " {}");
+    }
+}